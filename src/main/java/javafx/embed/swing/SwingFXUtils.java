@@ -28,9 +28,15 @@ package javafx.embed.swing;
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
 import java.awt.image.SampleModel;
 import java.awt.image.SinglePixelPackedSampleModel;
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import javafx.scene.image.Image;
 import javafx.scene.image.PixelFormat;
@@ -38,7 +44,14 @@ import javafx.scene.image.PixelReader;
 import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import javafx.scene.image.WritablePixelFormat;
-import javafx.scene.paint.Color;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
 
 /**
  * This class provides utility methods for converting data types between
@@ -48,6 +61,181 @@ import javafx.scene.paint.Color;
 public class SwingFXUtils {
     private SwingFXUtils() {} // no instances
 
+    /**
+     * The number of pixels in the intermediate buffer of the conversions
+     * that reorder or expand pixels, which write the image in bands of rows
+     * rather than allocating a buffer as large as the image.
+     */
+    private static final int BAND_PIXELS = 64 * 1024;
+
+    /**
+     * A Flight Recorder event for each conversion of a {@link BufferedImage}
+     * into a JavaFX image.
+     * The event is disabled by default; when it is not enabled in a
+     * recording, its cost is only the allocation of an object that the
+     * compiler can usually eliminate.
+     */
+    @Name("javafx.embed.swing.ToFXImage")
+    @Label("To FX Image")
+    @Category({"JavaFX", "Swing Interop"})
+    @Description("Conversion of a BufferedImage into a WritableImage")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ToFXImageEvent extends Event {
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Source Type")
+        @Description("Type of the BufferedImage without its TYPE_ prefix")
+        String sourceType;
+
+        @Label("Branch")
+        @Description("Conversion path: INT, INDEXED, OPAQUE_INT, BYTE or DRAW_IMAGE")
+        String branch;
+
+        @Label("New Target")
+        @Description("Whether a new WritableImage was allocated")
+        boolean newTarget;
+
+        @Label("Bytes Copied")
+        @Description("Bytes of pixels copied, including any intermediate image")
+        @DataAmount
+        long bytesCopied;
+    }
+
+    /**
+     * A Flight Recorder event for each conversion of a JavaFX image into a
+     * {@link BufferedImage}, disabled by default like
+     * {@link ToFXImageEvent}.
+     */
+    @Name("javafx.embed.swing.FromFXImage")
+    @Label("From FX Image")
+    @Category({"JavaFX", "Swing Interop"})
+    @Description("Conversion of a JavaFX Image into a BufferedImage")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class FromFXImageEvent extends Event {
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Source Format")
+        @Description("Pixel format of the JavaFX Image")
+        String sourceFormat;
+
+        @Label("Target Type")
+        @Description("Type of the BufferedImage without its TYPE_ prefix")
+        String targetType;
+
+        @Label("Opacity Checked")
+        @Description("Whether every source pixel was read to check its opacity")
+        boolean opacityChecked;
+
+        @Label("New Target")
+        @Description("Whether a new BufferedImage was allocated")
+        boolean newTarget;
+
+        @Label("Bytes Copied")
+        @DataAmount
+        long bytesCopied;
+    }
+
+    /**
+     * Gets the name of a {@link BufferedImage} type without its
+     * {@code TYPE_} prefix, for the fields of the conversion events.
+     */
+    private static String getTypeName(int type) {
+        switch (type) {
+            case BufferedImage.TYPE_INT_RGB:
+                return "INT_RGB";
+            case BufferedImage.TYPE_INT_ARGB:
+                return "INT_ARGB";
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                return "INT_ARGB_PRE";
+            case BufferedImage.TYPE_INT_BGR:
+                return "INT_BGR";
+            case BufferedImage.TYPE_3BYTE_BGR:
+                return "3BYTE_BGR";
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                return "4BYTE_ABGR";
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+                return "4BYTE_ABGR_PRE";
+            case BufferedImage.TYPE_USHORT_565_RGB:
+                return "USHORT_565_RGB";
+            case BufferedImage.TYPE_USHORT_555_RGB:
+                return "USHORT_555_RGB";
+            case BufferedImage.TYPE_BYTE_GRAY:
+                return "BYTE_GRAY";
+            case BufferedImage.TYPE_USHORT_GRAY:
+                return "USHORT_GRAY";
+            case BufferedImage.TYPE_BYTE_BINARY:
+                return "BYTE_BINARY";
+            case BufferedImage.TYPE_BYTE_INDEXED:
+                return "BYTE_INDEXED";
+            default:
+                return "CUSTOM";
+        }
+    }
+
+    /**
+     * The paths taken by {@code toFXImage}, which are also recorded as the
+     * branch of its event.
+     */
+    private enum Branch {
+        INT, INDEXED, OPAQUE_INT, BYTE, DRAW_IMAGE;
+
+        /**
+         * Gets the path for a {@link BufferedImage} type.
+         */
+        static Branch of(int type) {
+            switch (type) {
+                case BufferedImage.TYPE_INT_ARGB:
+                case BufferedImage.TYPE_INT_ARGB_PRE:
+                    return INT;
+                case BufferedImage.TYPE_BYTE_INDEXED:
+                case BufferedImage.TYPE_BYTE_BINARY:
+                    return INDEXED;
+                case BufferedImage.TYPE_INT_RGB:
+                case BufferedImage.TYPE_INT_BGR:
+                    return OPAQUE_INT;
+                case BufferedImage.TYPE_3BYTE_BGR:
+                case BufferedImage.TYPE_4BYTE_ABGR:
+                case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+                    return BYTE;
+                default:
+                    return DRAW_IMAGE;
+            }
+        }
+    }
+
+    /**
+     * Commits the conversion event if it is enabled and over its threshold.
+     * The fields are set only then, so a disabled event costs nothing more
+     * than its {@code begin} and {@code shouldCommit} calls.
+     */
+    private static void commitEvent(ToFXImageEvent event, BufferedImage bimg,
+                                    int bw, int bh, boolean newTarget)
+    {
+        if (event.shouldCommit()) {
+            int type = bimg.getType();
+            Branch branch = Branch.of(type);
+            long bytes = (long) bw * bh * 4;
+            event.width = bw;
+            event.height = bh;
+            event.sourceType = getTypeName(type);
+            event.branch = branch.name();
+            event.newTarget = newTarget;
+            // The fallback first draws into an intermediate INT_ARGB_PRE image.
+            event.bytesCopied = branch == Branch.DRAW_IMAGE ? 2 * bytes : bytes;
+            event.commit();
+        }
+    }
+
     /**
      * Snapshots the specified {@link BufferedImage} and stores a copy of
      * its pixels into a JavaFX {@link Image} object, creating a new
@@ -71,22 +259,175 @@ public class SwingFXUtils {
      * @since JavaFX 2.2
      */
     public static WritableImage toFXImage(BufferedImage bimg, WritableImage wimg) {
+        ToFXImageEvent event = new ToFXImageEvent();
+        event.begin();
+        WritableImage result = convertToFXImage(bimg, wimg);
+        commitEvent(event, bimg, bimg.getWidth(), bimg.getHeight(), result != wimg);
+        return result;
+    }
+
+    /**
+     * Converts the {@link BufferedImage} for {@code toFXImage} by the path
+     * for its type.
+     *
+     * @param bimg the {@code BufferedImage} object to be converted
+     * @param wimg an optional {@code WritableImage} object, or null
+     * @return the supplied {@code WritableImage} or a new one
+     */
+    private static WritableImage convertToFXImage(BufferedImage bimg, WritableImage wimg) {
         int bw = bimg.getWidth();
         int bh = bimg.getHeight();
-        switch (bimg.getType()) {
-            case BufferedImage.TYPE_INT_ARGB:
-            case BufferedImage.TYPE_INT_ARGB_PRE:
-                break;
+        return convertToFXImage(bimg, prepareFXImage(wimg, bw, bh), 0, 0);
+    }
+
+    /**
+     * Copies a rectangular region of the specified {@link BufferedImage}
+     * into a JavaFX {@link WritableImage} at the specified location,
+     * leaving the rest of the {@code WritableImage} unchanged.
+     * This method can be used to update one tile of a larger image or to
+     * pack many small images into a single atlas image.
+     * <p>
+     * The region is read in place, without first copying it into a new
+     * image, so the {@code BufferedImage} may itself be a view created by
+     * {@link BufferedImage#getSubimage getSubimage} whose raster has a
+     * non-zero sample model translation and a scanline stride larger than
+     * its width.
+     *
+     * @param bimg the {@code BufferedImage} object to be converted
+     * @param sx the X coordinate of the region in the {@code BufferedImage}
+     * @param sy the Y coordinate of the region in the {@code BufferedImage}
+     * @param sw the width of the region
+     * @param sh the height of the region
+     * @param wimg the {@code WritableImage} to store the pixels
+     * @param dx the X coordinate of the region in the {@code WritableImage}
+     * @param dy the Y coordinate of the region in the {@code WritableImage}
+     * @return the supplied {@code WritableImage}
+     * @throws IndexOutOfBoundsException if the region is not inside both
+     *         images
+     */
+    public static WritableImage toFXImage(BufferedImage bimg,
+                                          int sx, int sy, int sw, int sh,
+                                          WritableImage wimg, int dx, int dy)
+    {
+        if (sx < 0 || sy < 0 || sw < 0 || sh < 0 ||
+            sw > bimg.getWidth() - sx || sh > bimg.getHeight() - sy)
+        {
+            throw new IndexOutOfBoundsException(
+                "Region is outside of the source image");
+        }
+        if (dx < 0 || dy < 0 ||
+            sw > (int) wimg.getWidth() - dx || sh > (int) wimg.getHeight() - dy)
+        {
+            throw new IndexOutOfBoundsException(
+                "Region is outside of the target image");
+        }
+        if (sw == 0 || sh == 0) {
+            return wimg;
+        }
+        ToFXImageEvent event = new ToFXImageEvent();
+        event.begin();
+        // The subimage shares the raster data of the source image.
+        if (sx != 0 || sy != 0 || sw != bimg.getWidth() || sh != bimg.getHeight()) {
+            bimg = bimg.getSubimage(sx, sy, sw, sh);
+        }
+        convertToFXImage(bimg, wimg, dx, dy);
+        commitEvent(event, bimg, sw, sh, false);
+        return wimg;
+    }
+
+    /**
+     * Copies all of the pixels of the {@link BufferedImage}, which may be a
+     * subimage, into the {@link WritableImage} at the specified location by
+     * the path for its type.
+     *
+     * @param bimg the {@code BufferedImage} to be converted
+     * @param wimg the {@code WritableImage} to store the pixels
+     * @param dx the X coordinate of the pixels in the {@code WritableImage}
+     * @param dy the Y coordinate of the pixels in the {@code WritableImage}
+     * @return the supplied {@code WritableImage}
+     */
+    private static WritableImage
+        convertToFXImage(BufferedImage bimg, WritableImage wimg, int dx, int dy)
+    {
+        int sw = bimg.getWidth();
+        int sh = bimg.getHeight();
+        switch (Branch.of(bimg.getType())) {
+            case INT:
+                return toFXImageInts(bimg, wimg, dx, dy);
+            case INDEXED:
+                // Expands the palette indices directly into the target
+                // rather than drawing into an intermediate INT_ARGB_PRE image.
+                return toFXImageIndexed(bimg, wimg, dx, dy);
+            case OPAQUE_INT:
+                // Masks in the opaque alpha directly rather than drawing
+                // into an intermediate INT_ARGB_PRE image.
+                return toFXImageOpaqueInts(bimg, wimg, dx, dy);
+            case BYTE:
+                // Reorders the components into a JavaFX byte format rather
+                // than drawing into an intermediate INT_ARGB_PRE image.
+                return toFXImageBytes(bimg, wimg, dx, dy);
             default:
                 BufferedImage converted =
-                    new BufferedImage(bw, bh, BufferedImage.TYPE_INT_ARGB_PRE);
+                    new BufferedImage(sw, sh, BufferedImage.TYPE_INT_ARGB_PRE);
                 Graphics2D g2d = converted.createGraphics();
                 g2d.drawImage(bimg, 0, 0, null);
                 g2d.dispose();
-                bimg = converted;
-                break;
+                return toFXImageInts(converted, wimg, dx, dy);
         }
-        // assert(bimg.getType == TYPE_INT_ARGB[_PRE]);
+    }
+
+    /**
+     * Copies the pixels of a {@code TYPE_INT_ARGB} or
+     * {@code TYPE_INT_ARGB_PRE} image into the {@link WritableImage} with a
+     * single write directly from its raster.
+     *
+     * @param bimg the {@code BufferedImage} to be converted
+     * @param wimg the prepared {@code WritableImage} to store the pixels
+     * @param dx the X coordinate of the pixels in the {@code WritableImage}
+     * @param dy the Y coordinate of the pixels in the {@code WritableImage}
+     * @return the supplied {@code WritableImage}
+     */
+    private static WritableImage
+        toFXImageInts(BufferedImage bimg, WritableImage wimg, int dx, int dy)
+    {
+        int bw = bimg.getWidth();
+        int bh = bimg.getHeight();
+        Raster raster = bimg.getRaster();
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+        DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+        int data[] = db.getData();
+        int offset = db.getOffset();
+        int scan =  0;
+        SampleModel sm = raster.getSampleModel();
+        if (sm instanceof SinglePixelPackedSampleModel) {
+            SinglePixelPackedSampleModel sppsm = (SinglePixelPackedSampleModel) sm;
+            // Subimages share the data of their parent image.
+            offset += sppsm.getOffset(-tx, -ty);
+            scan = sppsm.getScanlineStride();
+        }
+
+        PixelFormat<IntBuffer> pf = (bimg.isAlphaPremultiplied() ?
+                                     PixelFormat.getIntArgbPreInstance() :
+                                     PixelFormat.getIntArgbInstance());
+        wimg.getPixelWriter().setPixels(dx, dy, bw, bh, pf, data, offset, scan);
+        return wimg;
+    }
+
+    /**
+     * Prepares the optional {@link WritableImage} to receive a copy of
+     * pixels with the specified dimensions, clearing any margins of the
+     * image outside of those dimensions, or creates a new image if the
+     * supplied object is null or too small.
+     *
+     * @param wimg an optional {@code WritableImage} object, or null
+     * @param bw the width of the pixels to be copied
+     * @param bh the height of the pixels to be copied
+     * @return the supplied {@code WritableImage} or a new one
+     */
+    private static WritableImage
+        prepareFXImage(WritableImage wimg, int bw, int bh)
+    {
         if (wimg != null) {
             int iw = (int) wimg.getWidth();
             int ih = (int) wimg.getHeight();
@@ -107,20 +448,239 @@ public class SwingFXUtils {
         if (wimg == null) {
             wimg = new WritableImage(bw, bh);
         }
+        return wimg;
+    }
+
+    /**
+     * Gets the number of rows in each band of pixels converted through an
+     * intermediate buffer, so that the buffer holds about
+     * {@link #BAND_PIXELS} pixels however large the image.
+     * Each write notifies the image of changed pixels, so a band of several
+     * rows is written at a time rather than a single row.
+     *
+     * @param bw the width of the image
+     * @param bh the height of the image
+     * @return the number of rows in each band, at least one
+     */
+    private static int getBandHeight(int bw, int bh) {
+        return Math.max(1, Math.min(bh, BAND_PIXELS / Math.max(1, bw)));
+    }
+
+    /**
+     * Reads the palette of the specified {@link IndexColorModel} into a
+     * lookup table of INT_ARGB_PRE colors.
+     * The table has at least 256 entries so that it can be indexed by any
+     * unsigned byte value; entries beyond the size of the palette are
+     * transparent.
+     *
+     * @param icm the color model of an indexed image
+     * @return the premultiplied lookup table
+     */
+    private static int[] getPremultipliedPalette(IndexColorModel icm) {
+        int size = icm.getMapSize();
+        int lut[] = new int[Math.max(size, 256)];
+        icm.getRGBs(lut);
+        for (int i = 0; i < size; i++) {
+            int argb = lut[i];
+            int a = argb >>> 24;
+            if (a == 0) {
+                lut[i] = 0;
+            } else if (a < 0xff) {
+                int r = (((argb >> 16) & 0xff) * a + 127) / 0xff;
+                int g = (((argb >>  8) & 0xff) * a + 127) / 0xff;
+                int b = (((argb      ) & 0xff) * a + 127) / 0xff;
+                lut[i] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+        return lut;
+    }
+
+    /**
+     * Copies the pixels of an indexed {@link BufferedImage} into a JavaFX
+     * {@link WritableImage} by looking up each palette index in a
+     * premultiplied table built once for the image.
+     * Images with 8-bit indices are written directly from their raster
+     * with a byte-indexed pixel format; images with packed 1, 2 or 4-bit
+     * indices are expanded and written in bands of rows.
+     *
+     * @param bimg a {@code BufferedImage} of type TYPE_BYTE_INDEXED or
+     *        TYPE_BYTE_BINARY
+     * @param wimg a {@code WritableImage} at least as large as the
+     *        {@code BufferedImage}
+     * @param dx the X coordinate of the pixels in the {@code WritableImage}
+     * @param dy the Y coordinate of the pixels in the {@code WritableImage}
+     * @return the {@code WritableImage}
+     */
+    private static WritableImage
+        toFXImageIndexed(BufferedImage bimg, WritableImage wimg, int dx, int dy)
+    {
+        int bw = bimg.getWidth();
+        int bh = bimg.getHeight();
+        int lut[] = getPremultipliedPalette((IndexColorModel) bimg.getColorModel());
+        Raster raster = bimg.getRaster();
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+        DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+        byte data[] = db.getData();
+        int offset = db.getOffset();
+        SampleModel sm = raster.getSampleModel();
         PixelWriter pw = wimg.getPixelWriter();
-        DataBufferInt db = (DataBufferInt)bimg.getRaster().getDataBuffer();
+        if (sm instanceof ComponentSampleModel) {
+            ComponentSampleModel csm = (ComponentSampleModel) sm;
+            PixelFormat<ByteBuffer> pf =
+                PixelFormat.createByteIndexedPremultipliedInstance(lut);
+            pw.setPixels(dx, dy, bw, bh, pf, data,
+                         offset + csm.getOffset(-tx, -ty),
+                         csm.getScanlineStride());
+        } else {
+            MultiPixelPackedSampleModel mpsm = (MultiPixelPackedSampleModel) sm;
+            int bits = mpsm.getPixelBitStride();
+            int mask = (1 << bits) - 1;
+            int rows = getBandHeight(bw, bh);
+            int argb[] = new int[bw * rows];
+            PixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
+            for (int top = 0; top < bh; top += rows) {
+                int n = Math.min(rows, bh - top);
+                for (int y = top, i = 0; y < top + n; y++) {
+                    int index = offset + mpsm.getOffset(-tx, y - ty);
+                    int shift = 8 - bits - mpsm.getBitOffset(-tx);
+                    int bite = data[index] & 0xff;
+                    for (int x = 0; x < bw; x++) {
+                        if (shift < 0) {
+                            bite = data[++index] & 0xff;
+                            shift = 8 - bits;
+                        }
+                        argb[i++] = lut[(bite >> shift) & mask];
+                        shift -= bits;
+                    }
+                }
+                pw.setPixels(dx, dy + top, bw, n, pf, argb, 0, bw);
+            }
+        }
+        return wimg;
+    }
+
+    /**
+     * Copies the pixels of an opaque {@code TYPE_INT_RGB} or
+     * {@code TYPE_INT_BGR} image into the {@link WritableImage} in bands of
+     * rows, setting the unused high byte of each pixel to an opaque
+     * alpha value and swapping the red and blue components of BGR pixels.
+     *
+     * @param bimg the opaque {@code BufferedImage} to be converted
+     * @param wimg the prepared {@code WritableImage} to store the pixels
+     * @param dx the X coordinate of the pixels in the {@code WritableImage}
+     * @param dy the Y coordinate of the pixels in the {@code WritableImage}
+     * @return the supplied {@code WritableImage}
+     */
+    private static WritableImage
+        toFXImageOpaqueInts(BufferedImage bimg, WritableImage wimg, int dx, int dy)
+    {
+        int bw = bimg.getWidth();
+        int bh = bimg.getHeight();
+        boolean bgr = bimg.getType() == BufferedImage.TYPE_INT_BGR;
+        Raster raster = bimg.getRaster();
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+        DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
         int data[] = db.getData();
-        int offset = bimg.getRaster().getDataBuffer().getOffset();
-        int scan =  0;
-        SampleModel sm = bimg.getRaster().getSampleModel();
-        if (sm instanceof SinglePixelPackedSampleModel) {
-            scan = ((SinglePixelPackedSampleModel)sm).getScanlineStride();
+        int offset = db.getOffset();
+        SinglePixelPackedSampleModel sppsm =
+            (SinglePixelPackedSampleModel) raster.getSampleModel();
+        PixelWriter pw = wimg.getPixelWriter();
+        PixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
+        int rows = getBandHeight(bw, bh);
+        int argb[] = new int[bw * rows];
+        for (int top = 0; top < bh; top += rows) {
+            int n = Math.min(rows, bh - top);
+            for (int y = top, i = 0; y < top + n; y++) {
+                int index = offset + sppsm.getOffset(-tx, y - ty);
+                if (bgr) {
+                    for (int x = 0; x < bw; x++) {
+                        int p = data[index + x];
+                        argb[i++] = 0xff000000 | (p & 0xff) << 16 | (p & 0xff00) |
+                                    (p >> 16) & 0xff;
+                    }
+                } else {
+                    for (int x = 0; x < bw; x++) {
+                        argb[i++] = 0xff000000 | data[index + x];
+                    }
+                }
+            }
+            pw.setPixels(dx, dy + top, bw, n, pf, argb, 0, bw);
         }
+        return wimg;
+    }
 
-        PixelFormat<IntBuffer> pf = (bimg.isAlphaPremultiplied() ?
-                                     PixelFormat.getIntArgbPreInstance() :
-                                     PixelFormat.getIntArgbInstance());
-        pw.setPixels(0, 0, bw, bh, pf, data, offset, scan);
+    /**
+     * Copies the pixels of a {@code TYPE_3BYTE_BGR},
+     * {@code TYPE_4BYTE_ABGR} or {@code TYPE_4BYTE_ABGR_PRE} image into the
+     * {@link WritableImage} in bands of rows, reordering the components
+     * of each pixel into the JavaFX {@code BYTE_RGB}, {@code BYTE_BGRA} or
+     * {@code BYTE_BGRA_PRE} format.
+     *
+     * @param bimg the {@code BufferedImage} to be converted
+     * @param wimg the prepared {@code WritableImage} to store the pixels
+     * @param dx the X coordinate of the pixels in the {@code WritableImage}
+     * @param dy the Y coordinate of the pixels in the {@code WritableImage}
+     * @return the supplied {@code WritableImage}
+     */
+    private static WritableImage
+        toFXImageBytes(BufferedImage bimg, WritableImage wimg, int dx, int dy)
+    {
+        int bw = bimg.getWidth();
+        int bh = bimg.getHeight();
+        Raster raster = bimg.getRaster();
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+        DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+        byte data[] = db.getData();
+        int offset = db.getOffset();
+        ComponentSampleModel csm = (ComponentSampleModel) raster.getSampleModel();
+        int bands[] = csm.getBandOffsets();
+        int stride = csm.getPixelStride();
+        // The offset of each pixel includes the offset of its first band.
+        int r = 0;
+        int g = bands[1] - bands[0];
+        int b = bands[2] - bands[0];
+        PixelWriter pw = wimg.getPixelWriter();
+        int rows = getBandHeight(bw, bh);
+        if (bands.length == 3) {
+            PixelFormat<ByteBuffer> pf = PixelFormat.getByteRgbInstance();
+            int scan = bw * 3;
+            byte rgb[] = new byte[scan * rows];
+            for (int top = 0; top < bh; top += rows) {
+                int n = Math.min(rows, bh - top);
+                for (int y = top, i = 0; y < top + n; y++) {
+                    int index = offset + csm.getOffset(-tx, y - ty);
+                    for (int end = i + scan; i < end; i += 3, index += stride) {
+                        rgb[i] = data[index + r];
+                        rgb[i + 1] = data[index + g];
+                        rgb[i + 2] = data[index + b];
+                    }
+                }
+                pw.setPixels(dx, dy + top, bw, n, pf, rgb, 0, scan);
+            }
+        } else {
+            int a = bands[3] - bands[0];
+            PixelFormat<ByteBuffer> pf = (bimg.isAlphaPremultiplied() ?
+                                          PixelFormat.getByteBgraPreInstance() :
+                                          PixelFormat.getByteBgraInstance());
+            int scan = bw * 4;
+            byte bgra[] = new byte[scan * rows];
+            for (int top = 0; top < bh; top += rows) {
+                int n = Math.min(rows, bh - top);
+                for (int y = top, i = 0; y < top + n; y++) {
+                    int index = offset + csm.getOffset(-tx, y - ty);
+                    for (int end = i + scan; i < end; i += 4, index += stride) {
+                        bgra[i] = data[index + b];
+                        bgra[i + 1] = data[index + g];
+                        bgra[i + 2] = data[index + r];
+                        bgra[i + 3] = data[index + a];
+                    }
+                }
+                pw.setPixels(dx, dy + top, bw, n, pf, bgra, 0, scan);
+            }
+        }
         return wimg;
     }
 
@@ -201,10 +761,15 @@ public class SwingFXUtils {
     }
 
     private static boolean checkFXImageOpaque(PixelReader pr, int iw, int ih) {
-        for (int x = 0; x < iw; x++) {
-            for (int y = 0; y < ih; y++) {
-                Color color = pr.getColor(x,y);
-                if (color.getOpacity() != 1.0) {
+        // Read whole rows in bulk rather than a Color object per pixel.
+        // The premultiplied format avoids divides for non-premultiplied
+        // sources and leaves the alpha component unchanged.
+        int row[] = new int[iw];
+        WritablePixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
+        for (int y = 0; y < ih; y++) {
+            pr.getPixels(0, y, iw, 1, pf, row, 0, iw);
+            for (int x = 0; x < iw; x++) {
+                if ((row[x] >>> 24) != 0xff) {
                     return false;
                 }
             }
@@ -246,6 +811,10 @@ public class SwingFXUtils {
         if (pr == null) {
             return null;
         }
+        FromFXImageEvent event = new FromFXImageEvent();
+        event.begin();
+        BufferedImage supplied = bimg;
+        boolean opacityChecked = false;
         int iw = (int) img.getWidth();
         int ih = (int) img.getHeight();
         PixelFormat<?> fxFormat = pr.getPixelFormat();
@@ -261,6 +830,7 @@ public class SwingFXUtils {
                         (bimg.getType() == BufferedImage.TYPE_INT_BGR ||
                          bimg.getType() == BufferedImage.TYPE_INT_RGB)) {
                     srcPixelsAreOpaque = checkFXImageOpaque(pr, iw, ih);
+                    opacityChecked = true;
                 }
                 break;
             case BYTE_RGB:
@@ -294,6 +864,16 @@ public class SwingFXUtils {
 
         WritablePixelFormat<IntBuffer> pf = getAssociatedPixelFormat(bimg);
         pr.getPixels(0, 0, iw, ih, pf, data, offset, scan);
+        if (event.shouldCommit()) {
+            event.width = iw;
+            event.height = ih;
+            event.sourceFormat = fxFormat.getType().name();
+            event.targetType = getTypeName(bimg.getType());
+            event.opacityChecked = opacityChecked;
+            event.newTarget = bimg != supplied;
+            event.bytesCopied = (long) iw * ih * 4;
+            event.commit();
+        }
         return bimg;
     }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the conversion kernels that are meant to allocate nothing once
+ * warmed up, so that the {@link AllocationCheck} harness can verify them on
+ * their own, apart from the objects allocated by AWT and JavaFX around them.
+ * Run these benchmarks with their allocation checks using a command like the
+ * following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -cp target/benchmarks.jar org.status6.tofximage.AllocationCheck \
+ *   -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class AllocationBenchmarks {
+
+    /**
+     * The file name of the source animation.
+     */
+    private static final String FILE_NAME = "doll-dancing.gif";
+
+    /**
+     * The number of frames of the animation to load.
+     */
+    private static final int FRAME_COUNT = 16;
+
+    @State(Scope.Thread)
+    public static class SourceFrames {
+
+        private ArrayList<BufferedImage> frames;
+        private ArrayList<int[]> argb;
+        private int width;
+        private int height;
+        private int index;
+
+        private void nextFrame() {
+            index = index == frames.size() - 1 ? 0 : index + 1;
+        }
+
+        @Setup
+        public void doSetup() throws IOException {
+            var input = AllocationBenchmarks.class.getResourceAsStream("/" + FILE_NAME);
+            if (input == null) {
+                throw new IOException("Error loading image");
+            }
+            ImageInputStream stream = ImageIO.createImageInputStream(input);
+            ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+            reader.setInput(stream);
+            int count = Math.min(FRAME_COUNT, reader.getNumImages(true));
+            frames = new ArrayList<>(count);
+            argb = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                BufferedImage frame = reader.read(i);
+                width = frame.getWidth();
+                height = frame.getHeight();
+                frames.add(frame);
+                argb.add(frame.getRGB(0, 0, width, height, null, 0, width));
+            }
+            stream.close();
+            reader.dispose();
+            index = 0;
+        }
+
+        @TearDown
+        public void doTearDown() {
+            frames.clear();
+            argb.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Target {
+
+        private int[] array;
+        private ByteBuffer buffer;
+        private int[] palette;
+        private BgraPreWriter writer;
+
+        @Setup
+        public void doSetup(SourceFrames src) {
+            array = new int[src.width * src.height];
+            buffer = ByteBuffer.allocateDirect(array.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            writer = new BgraPreWriter();
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Ring {
+
+        private FrameRing<Object> ring;
+        private Object item;
+
+        @Setup
+        public void doSetup() {
+            ring = new FrameRing<>(4);
+            item = new Object();
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    /**
+     * Premultiplies the INT_ARGB pixels of the next frame into an integer
+     * array with {@link AlphaConverter}.
+     *
+     * @param src the source frames
+     * @param dst the target array in INT_ARGB_PRE pixel format
+     */
+    @Benchmark
+    @AllocationFree
+    public void premultiplyIntoInts(SourceFrames src, Target dst) {
+        AlphaConverter.premultiply(src.argb.get(src.index), 0, dst.array, 0, dst.array.length);
+        src.nextFrame();
+    }
+
+    /**
+     * Premultiplies the INT_ARGB pixels of the next frame into a direct byte
+     * buffer in little-endian order with {@link AlphaConverter}.
+     *
+     * @param src the source frames
+     * @param dst the target buffer in BYTE_BGRA_PRE pixel format
+     */
+    @Benchmark
+    @AllocationFree
+    public void premultiplyIntoBytes(SourceFrames src, Target dst) {
+        AlphaConverter.premultiply(src.argb.get(src.index), 0, dst.buffer, 0, dst.array.length);
+        src.nextFrame();
+    }
+
+    /**
+     * Expands the palette indices of the next frame into an integer array
+     * with {@link IndexedPixels}, reusing the array of its palette.
+     *
+     * @param src the source frames
+     * @param dst the target array in INT_ARGB_PRE pixel format
+     */
+    @Benchmark
+    @AllocationFree
+    public void expandIndexed(SourceFrames src, Target dst) {
+        BufferedImage frame = src.frames.get(src.index);
+        dst.palette = IndexedPixels.getPalette((IndexColorModel) frame.getColorModel(), dst.palette);
+        IndexedPixels.expand(frame, dst.palette, dst.array, 0, src.width);
+        src.nextFrame();
+    }
+
+    /**
+     * Writes the next frame into a direct byte buffer with
+     * {@link BgraPreWriter}, reusing the palette table of the writer.
+     *
+     * @param src the source frames
+     * @param dst the target buffer in BYTE_BGRA_PRE pixel format
+     */
+    @Benchmark
+    @AllocationFree
+    public void writeBgraPre(SourceFrames src, Target dst) {
+        dst.writer.write(src.frames.get(src.index), dst.buffer);
+        src.nextFrame();
+    }
+
+    /**
+     * Passes an object through a {@link FrameRing}.
+     *
+     * @param r the ring and the object
+     * @param blackhole used to consume the object taken from the ring
+     */
+    @Benchmark
+    @AllocationFree
+    public void passThroughRing(Ring r, Blackhole blackhole) {
+        r.ring.offer(r.item);
+        blackhole.consume(r.ring.poll());
+    }
+}
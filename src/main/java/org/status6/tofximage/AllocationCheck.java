@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.BenchmarkList;
+import org.openjdk.jmh.runner.BenchmarkListEntry;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.format.OutputFormatFactory;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+/**
+ * Runs every benchmark method annotated with {@link AllocationFree} under the
+ * JMH garbage collection profiler and fails if any of them allocates more
+ * than its allowance per operation in steady state. The allocation is taken
+ * from the normalized allocation rate of the measurement iterations, after
+ * warmup. The command line accepts the same options as the JMH runner,
+ * although the benchmarks to run are always the annotated ones. The exit
+ * status is 1 if any check fails. Run the checks with a command like the
+ * following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -cp target/benchmarks.jar org.status6.tofximage.AllocationCheck \
+ *   -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class AllocationCheck {
+
+    /**
+     * The bytes per operation above the allowance that are still accepted,
+     * covering the error of the allocation counters averaged over an
+     * iteration.
+     */
+    private static final double TOLERANCE = 16;
+
+    /**
+     * The suffix of the name of the secondary result with the bytes
+     * allocated per operation.
+     */
+    private static final String ALLOC_RATE_NORM = "gc.alloc.rate.norm";
+
+    /**
+     * Finds the benchmark methods annotated as allocation-free.
+     *
+     * @return a map from the fully-qualified name of each method to its
+     * allowance in bytes per operation
+     * @throws ClassNotFoundException if a benchmark class cannot be loaded
+     */
+    private static Map<String, Integer> findMethods() throws ClassNotFoundException {
+        var methods = new HashMap<String, Integer>();
+        var out = OutputFormatFactory.createFormatInstance(System.out, VerboseMode.SILENT);
+        for (BenchmarkListEntry entry : BenchmarkList.defaultList().getAll(out, List.of())) {
+            String name = entry.getUsername();
+            String methodName = name.substring(name.lastIndexOf('.') + 1);
+            Class<?> klass = Class.forName(entry.getUserClassQName());
+            for (Method method : klass.getMethods()) {
+                AllocationFree annotation = method.getAnnotation(AllocationFree.class);
+                if (annotation != null && method.getName().equals(methodName)) {
+                    methods.put(name, annotation.allowance());
+                }
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Runs the allocation-free benchmarks and checks their allocation.
+     *
+     * @param args the JMH command-line options
+     * @throws CommandLineOptionException if the options are not valid
+     * @throws RunnerException if an error occurs running the benchmarks
+     * @throws ClassNotFoundException if a benchmark class cannot be loaded
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException,
+            ClassNotFoundException {
+        Map<String, Integer> methods = findMethods();
+        if (methods.isEmpty()) {
+            System.err.println("No benchmarks are annotated as allocation-free");
+            System.exit(1);
+        }
+        var builder = new OptionsBuilder().parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class);
+        for (String name : methods.keySet()) {
+            builder.include("^" + Pattern.quote(name) + "$");
+        }
+        int failures = 0;
+        System.out.println();
+        for (RunResult result : new Runner(builder.build()).run()) {
+            String name = result.getParams().getBenchmark();
+            // Skips benchmarks included only by the command-line options.
+            Integer allowed = methods.get(name);
+            if (allowed == null) {
+                continue;
+            }
+            double limit = allowed + TOLERANCE;
+            double bytes = Double.NaN;
+            for (String key : result.getSecondaryResults().keySet()) {
+                if (key.endsWith(ALLOC_RATE_NORM)) {
+                    Result<?> secondary = result.getSecondaryResults().get(key);
+                    bytes = secondary.getScore();
+                }
+            }
+            boolean passed = bytes <= limit;
+            if (!passed) {
+                failures++;
+            }
+            var label = new StringBuilder(name);
+            for (String key : result.getParams().getParamsKeys()) {
+                label.append(' ').append(key).append('=').append(result.getParams().getParam(key));
+            }
+            System.out.printf("%s %s: %.1f B/op (limit %.1f B/op)%n", passed ? "PASS" : "FAIL", label, bytes, limit);
+        }
+        if (failures > 0) {
+            System.err.println(failures + " allocation-free benchmarks allocated in steady state");
+            System.exit(1);
+        }
+    }
+}
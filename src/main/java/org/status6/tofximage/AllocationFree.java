@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares that the path measured by a benchmark method allocates nothing on
+ * the Java heap once warmed up. The {@link AllocationCheck} harness runs the
+ * annotated benchmarks with the JMH garbage collection profiler and fails if
+ * any of them allocates more than its allowance per operation.
+ *
+ * @author John Neffenger
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface AllocationFree {
+
+    /**
+     * The number of bytes per operation that the benchmark method allocates
+     * outside of the path it measures, such as the {@code Rectangle2D} of a
+     * simulated call to {@code PixelBuffer.updateBuffer}.
+     *
+     * @return the allowance in bytes per operation
+     */
+    int allowance() default 0;
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares copying a sequence of frames with mixed alpha content into a
+ * {@code PixelBuffer} by the path chosen for each frame by an
+ * {@link AlphaClassifier} against always premultiplying and against never
+ * premultiplying. Run a quick test of only these benchmarks with a command
+ * like the following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar AlphaBenchmarks -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class AlphaBenchmarks {
+
+    @State(Scope.Thread)
+    public static class SourceFrames {
+
+        @Param({"1920x1080"})
+        public String size;
+
+        /**
+         * The alpha content of the sequence: {@code OPAQUE} or
+         * {@code TRANSLUCENT} for frames all of one kind, or {@code MIXED}
+         * for a sequence in which half of the frames are opaque, a quarter
+         * are binary and a quarter are translucent.
+         */
+        @Param({"OPAQUE", "MIXED", "TRANSLUCENT"})
+        public String mix;
+
+        private ArrayList<BufferedImage> frames;
+        private int width;
+        private int height;
+        private int index;
+
+        private void nextFrame() {
+            index = index == frames.size() - 1 ? 0 : index + 1;
+        }
+
+        @Setup
+        public void doSetup() {
+            String[] values = size.split("x");
+            width = Integer.parseInt(values[0]);
+            height = Integer.parseInt(values[1]);
+            int count = SyntheticFrames.getCount(width, height);
+            frames = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                SyntheticFrames.Content content;
+                if (mix.equals("MIXED")) {
+                    content = i % 4 == 1 ? SyntheticFrames.Content.BINARY
+                            : i % 4 == 3 ? SyntheticFrames.Content.TRANSLUCENT
+                            : SyntheticFrames.Content.OPAQUE;
+                } else {
+                    content = SyntheticFrames.Content.valueOf(mix);
+                }
+                frames.add(SyntheticFrames.create(width, height, content, i));
+            }
+            index = 0;
+        }
+
+        @TearDown
+        public void doTearDown() {
+            frames.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Classifier {
+
+        private AlphaClassifier classifier;
+
+        @Setup
+        public void doSetup(SourceFrames awt) {
+            classifier = new AlphaClassifier();
+            awt.frames.forEach(classifier::get);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetIntBuffer {
+
+        private IntBuffer buffer;
+        private PixelBuffer<IntBuffer> pixels;
+
+        @Setup
+        public void doSetup(SourceFrames awt) {
+            buffer = IntBuffer.allocate(awt.width * awt.height);
+            pixels = new PixelBuffer<>(awt.width, awt.height, buffer, PixelFormat.getIntArgbPreInstance());
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TempRow {
+
+        private int[] row;
+
+        @Setup
+        public void doSetup(SourceFrames awt) {
+            row = new int[awt.width];
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    /**
+     * Gets the pixels of each frame directly into the integer buffer of a
+     * {@code PixelBuffer}. This method copies pixels in the INT_ARGB format
+     * into an integer buffer as INT_ARGB_PRE pixels (wrong alpha unless the
+     * frame is opaque or binary with black transparent pixels).
+     *
+     * @param awt the source frames
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putDirectIntoInts(SourceFrames awt, TargetIntBuffer jfx, Blackhole blackhole) {
+        awt.frames.get(awt.index).getRGB(0, 0, awt.width, awt.height, jfx.buffer.array(), 0, awt.width);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+        awt.nextFrame();
+    }
+
+    /**
+     * Gets the pixels of each frame row by row into an intermediate array;
+     * then premultiplies each row into the integer buffer of a
+     * {@code PixelBuffer}. This method copies pixels in the INT_ARGB format
+     * into an integer buffer as INT_ARGB_PRE pixels (correct).
+     *
+     * @param awt the source frames
+     * @param tmp the intermediate row in INT_ARGB pixel format
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putPremultipliedIntoInts(SourceFrames awt, TempRow tmp, TargetIntBuffer jfx, Blackhole blackhole) {
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        for (int y = 0; y < awt.height; y++) {
+            awtImage.getRGB(0, y, awt.width, 1, tmp.row, 0, awt.width);
+            AlphaConverter.premultiply(tmp.row, 0, jfx.buffer, y * awt.width, awt.width);
+        }
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+        awt.nextFrame();
+    }
+
+    /**
+     * Gets the pixels of each frame into the integer buffer of a
+     * {@code PixelBuffer} by the path for its cached alpha class. This method
+     * copies pixels in the INT_ARGB format into an integer buffer as
+     * INT_ARGB_PRE pixels (correct).
+     *
+     * @param awt the source frames
+     * @param cls the classifier with every frame already classified
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putClassifiedIntoInts(SourceFrames awt, Classifier cls, TargetIntBuffer jfx, Blackhole blackhole) {
+        cls.classifier.getPixels(awt.frames.get(awt.index), jfx.buffer.array(), 0, awt.width);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+        awt.nextFrame();
+    }
+
+    /**
+     * Classifies each frame again before getting its pixels into the integer
+     * buffer of a {@code PixelBuffer}, showing the cost of the scan that the
+     * cache saves. This method copies pixels in the INT_ARGB format into an
+     * integer buffer as INT_ARGB_PRE pixels (correct).
+     *
+     * @param awt the source frames
+     * @param cls the classifier
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putRescannedIntoInts(SourceFrames awt, Classifier cls, TargetIntBuffer jfx, Blackhole blackhole) {
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        cls.classifier.remove(awtImage);
+        cls.classifier.getPixels(awtImage, jfx.buffer.array(), 0, awt.width);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+        awt.nextFrame();
+    }
+}
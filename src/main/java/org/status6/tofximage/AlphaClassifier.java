@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Classifies AWT images by the alpha values of their pixels and remembers the
+ * class of each image, so that a sequence of frames is scanned only once. An
+ * opaque image can be copied as INT_ARGB_PRE pixels without premultiplying,
+ * and an image whose pixels are either opaque or fully transparent needs only
+ * its transparent pixels cleared. The cache holds its images weakly and
+ * assumes that their pixels do not change once classified; call
+ * {@link #remove} after drawing into an image. A classifier is not
+ * thread-safe.
+ *
+ * @author John Neffenger
+ */
+public final class AlphaClassifier {
+
+    /**
+     * The classes of alpha values in an image.
+     */
+    public enum AlphaClass {
+        /**
+         * Every pixel is fully opaque.
+         */
+        OPAQUE,
+        /**
+         * Every pixel is either fully opaque or fully transparent.
+         */
+        BINARY,
+        /**
+         * At least one pixel is partially transparent.
+         */
+        TRANSLUCENT
+    }
+
+    private static final int OPAQUE = 0xff;
+
+    private final Map<BufferedImage, AlphaClass> cache = new WeakHashMap<>();
+
+    private int[] row;
+
+    /**
+     * Gets the class of an image, scanning its pixels only if the image has
+     * not been classified before.
+     *
+     * @param image the AWT image
+     * @return the class of its alpha values
+     */
+    public AlphaClass get(BufferedImage image) {
+        AlphaClass alpha = cache.get(image);
+        if (alpha == null) {
+            alpha = classify(image);
+            cache.put(image, alpha);
+        }
+        return alpha;
+    }
+
+    /**
+     * Forgets the class of an image so that it is scanned again on its next
+     * use.
+     *
+     * @param image the AWT image
+     */
+    public void remove(BufferedImage image) {
+        cache.remove(image);
+    }
+
+    /**
+     * Gets the number of images in the cache.
+     *
+     * @return the number of classified images
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Classifies an image by the alpha values of its pixels. The color model
+     * alone decides the class of an image without alpha or with a palette;
+     * any other image is scanned until its first partially transparent pixel.
+     *
+     * @param image the AWT image
+     * @return the class of its alpha values
+     */
+    public AlphaClass classify(BufferedImage image) {
+        ColorModel model = image.getColorModel();
+        if (model.getTransparency() == Transparency.OPAQUE) {
+            return AlphaClass.OPAQUE;
+        }
+        if (model instanceof IndexColorModel) {
+            return model.getTransparency() == Transparency.BITMASK ? AlphaClass.BINARY : AlphaClass.TRANSLUCENT;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int type = image.getType();
+        boolean binary = false;
+        if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE) {
+            Raster raster = image.getRaster();
+            int tx = raster.getSampleModelTranslateX();
+            int ty = raster.getSampleModelTranslateY();
+            DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+            int[] data = db.getData();
+            var sppsm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            for (int y = 0; y < height; y++) {
+                int src = db.getOffset() + sppsm.getOffset(-tx, y - ty);
+                for (int x = 0; x < width; x++) {
+                    int a = data[src + x] >>> 24;
+                    if (a != OPAQUE) {
+                        if (a != 0) {
+                            return AlphaClass.TRANSLUCENT;
+                        }
+                        binary = true;
+                    }
+                }
+            }
+        } else {
+            if (row == null || row.length < width) {
+                row = new int[width];
+            }
+            for (int y = 0; y < height; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    int a = row[x] >>> 24;
+                    if (a != OPAQUE) {
+                        if (a != 0) {
+                            return AlphaClass.TRANSLUCENT;
+                        }
+                        binary = true;
+                    }
+                }
+            }
+        }
+        return binary ? AlphaClass.BINARY : AlphaClass.OPAQUE;
+    }
+
+    /**
+     * Gets the pixels of an AWT image into an array of INT_ARGB_PRE pixels,
+     * such as the backing array of the integer buffer of a
+     * {@code PixelBuffer}, taking the cheapest correct path for the class of
+     * the image. Opaque images are copied with a single {@code getRGB}, binary
+     * images have their transparent pixels cleared, and only translucent
+     * images are premultiplied.
+     *
+     * @param image the source AWT image
+     * @param array the target array
+     * @param offset the index of the first pixel in the target array
+     * @param scan the distance between rows in the target array
+     */
+    public void getPixels(BufferedImage image, int[] array, int offset, int scan) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        switch (get(image)) {
+            case OPAQUE:
+                image.getRGB(0, 0, width, height, array, offset, scan);
+                break;
+            case BINARY:
+                image.getRGB(0, 0, width, height, array, offset, scan);
+                for (int y = 0; y < height; y++) {
+                    int start = offset + y * scan;
+                    for (int i = start; i < start + width; i++) {
+                        // Keeps opaque pixels, whose sign bit is set.
+                        array[i] &= array[i] >> 31;
+                    }
+                }
+                break;
+            default:
+                if (row == null || row.length < width) {
+                    row = new int[width];
+                }
+                for (int y = 0; y < height; y++) {
+                    image.getRGB(0, y, width, 1, row, 0, width);
+                    AlphaConverter.premultiply(row, 0, array, offset + y * scan, width);
+                }
+                break;
+        }
+    }
+}
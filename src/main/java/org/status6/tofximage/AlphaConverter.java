@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Converts pixels between the INT_ARGB and INT_ARGB_PRE formats in a single
+ * pass. The red and blue components are multiplied together as two 16-bit
+ * lanes of one integer, and opaque or fully transparent pixels skip the
+ * arithmetic entirely. The results match the rounding used by JavaFX.
+ *
+ * @author John Neffenger
+ */
+public final class AlphaConverter {
+
+    private static final int RED_BLUE = 0x00ff00ff;
+    private static final int HALF_RED_BLUE = 0x00800080;
+
+    private AlphaConverter() {
+    }
+
+    /**
+     * Converts one pixel from INT_ARGB to INT_ARGB_PRE.
+     *
+     * @param argb the pixel in INT_ARGB format
+     * @return the pixel in INT_ARGB_PRE format
+     */
+    public static int premultiply(int argb) {
+        int a = argb >>> 24;
+        if (a == 0xff) {
+            return argb;
+        }
+        if (a == 0) {
+            return 0;
+        }
+        // Divides each 16-bit lane by 255 with rounding: (x + 128) * 257 >> 16
+        int rb = (argb & RED_BLUE) * a + HALF_RED_BLUE;
+        rb = ((rb + ((rb >>> 8) & RED_BLUE)) >>> 8) & RED_BLUE;
+        int g = ((argb >>> 8) & 0xff) * a + 0x80;
+        g = (g + (g >>> 8)) & 0xff00;
+        return (a << 24) | rb | g;
+    }
+
+    /**
+     * Converts one pixel from INT_ARGB_PRE to INT_ARGB.
+     *
+     * @param pre the pixel in INT_ARGB_PRE format
+     * @return the pixel in INT_ARGB format
+     */
+    public static int unpremultiply(int pre) {
+        int a = pre >>> 24;
+        if (a == 0xff || a == 0) {
+            return pre;
+        }
+        int half = a >> 1;
+        int r = (pre >> 16) & 0xff;
+        int g = (pre >> 8) & 0xff;
+        int b = pre & 0xff;
+        r = r >= a ? 0xff : (r * 0xff + half) / a;
+        g = g >= a ? 0xff : (g * 0xff + half) / a;
+        b = b >= a ? 0xff : (b * 0xff + half) / a;
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Premultiplies INT_ARGB pixels from a source array into a target array.
+     * The arrays may be the same.
+     *
+     * @param src the source pixels in INT_ARGB format
+     * @param srcPos the index of the first source pixel
+     * @param dst the target array for pixels in INT_ARGB_PRE format
+     * @param dstPos the index of the first target pixel
+     * @param length the number of pixels to convert
+     */
+    public static void premultiply(int[] src, int srcPos, int[] dst, int dstPos, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstPos + i] = premultiply(src[srcPos + i]);
+        }
+    }
+
+    /**
+     * Premultiplies INT_ARGB pixels from a source array into an integer
+     * buffer, such as the buffer of a {@code PixelBuffer} in INT_ARGB_PRE
+     * format. The position of the buffer is not changed.
+     *
+     * @param src the source pixels in INT_ARGB format
+     * @param srcPos the index of the first source pixel
+     * @param dst the target buffer for pixels in INT_ARGB_PRE format
+     * @param dstPos the index of the first target pixel in the buffer
+     * @param length the number of pixels to convert
+     */
+    public static void premultiply(int[] src, int srcPos, IntBuffer dst, int dstPos, int length) {
+        if (dst.hasArray()) {
+            premultiply(src, srcPos, dst.array(), dst.arrayOffset() + dstPos, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                dst.put(dstPos + i, premultiply(src[srcPos + i]));
+            }
+        }
+    }
+
+    /**
+     * Premultiplies INT_ARGB pixels from a source array into a byte buffer,
+     * such as the buffer of a {@code PixelBuffer} in BYTE_BGRA_PRE format. The
+     * byte order of the buffer must be little-endian so that each integer is
+     * stored as the bytes B, G, R, and A. The position of the buffer is not
+     * changed.
+     *
+     * @param src the source pixels in INT_ARGB format
+     * @param srcPos the index of the first source pixel
+     * @param dst the target buffer for pixels in BYTE_BGRA_PRE format
+     * @param dstPos the index of the first target pixel in the buffer
+     * @param length the number of pixels to convert
+     * @throws IllegalArgumentException if the buffer is not little-endian
+     */
+    public static void premultiply(int[] src, int srcPos, ByteBuffer dst, int dstPos, int length) {
+        if (dst.order() != ByteOrder.LITTLE_ENDIAN) {
+            throw new IllegalArgumentException("Byte buffer must be little-endian");
+        }
+        int index = dstPos * Integer.BYTES;
+        for (int i = 0; i < length; i++) {
+            dst.putInt(index, premultiply(src[srcPos + i]));
+            index += Integer.BYTES;
+        }
+    }
+
+    /**
+     * Unpremultiplies INT_ARGB_PRE pixels from a source array into a target
+     * array. The arrays may be the same.
+     *
+     * @param src the source pixels in INT_ARGB_PRE format
+     * @param srcPos the index of the first source pixel
+     * @param dst the target array for pixels in INT_ARGB format
+     * @param dstPos the index of the first target pixel
+     * @param length the number of pixels to convert
+     */
+    public static void unpremultiply(int[] src, int srcPos, int[] dst, int dstPos, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstPos + i] = unpremultiply(src[srcPos + i]);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of a bulk job that loads and converts a batch of
+ * images, comparing a small fixed pool of platform threads with an
+ * {@link AsyncConverter} and its budget of pixel memory. The converter runs
+ * either on its default executor or on a fixed pool of platform threads with
+ * as many threads as the budget allows tasks in flight, so that the two
+ * executors differ only in their threading model. The default executor uses
+ * virtual threads only on JDK 21 or later. On earlier runtimes, such as the
+ * JDK 11 to 15 releases that this project targets, it falls back to a cached
+ * pool of platform threads, which the budget limits to the same number of
+ * threads as the fixed pool, so the two executors should score alike. Each
+ * image is decoded from PNG bytes after a simulated wait for its file, as
+ * when reading from a network share. Run a quick test of only these
+ * benchmarks with a command like the following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar AsyncBenchmarks -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class AsyncBenchmarks {
+
+    /**
+     * Reads and decodes one image, waiting first for the given time.
+     *
+     * @param bytes the encoded image
+     * @param latency the simulated wait for the file in milliseconds
+     * @return the decoded AWT image
+     * @throws IOException if an error occurs decoding the image
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static BufferedImage load(byte[] bytes, int latency) throws IOException, InterruptedException {
+        if (latency > 0) {
+            Thread.sleep(latency);
+        }
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) {
+            throw new IOException("Error decoding image");
+        }
+        return image;
+    }
+
+    @State(Scope.Thread)
+    public static class SourceFiles {
+
+        @Param({"320x240"})
+        public String size;
+
+        /**
+         * The number of images in each batch.
+         */
+        @Param({"64"})
+        public int count;
+
+        /**
+         * The simulated wait in milliseconds for each image file.
+         */
+        @Param({"0", "5"})
+        public int latency;
+
+        private ArrayList<byte[]> files;
+        private long bytes;
+
+        @Setup
+        public void doSetup() throws IOException {
+            String[] values = size.split("x");
+            int width = Integer.parseInt(values[0]);
+            int height = Integer.parseInt(values[1]);
+            files = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                BufferedImage image = SyntheticFrames.create(width, height, SyntheticFrames.Content.TRANSLUCENT, i);
+                var output = new ByteArrayOutputStream();
+                ImageIO.write(image, "png", output);
+                files.add(output.toByteArray());
+            }
+            // Holds the decoded image and its converted copy.
+            bytes = 2 * AsyncConverter.getBytes(width, height);
+        }
+
+        @TearDown
+        public void doTearDown() {
+            files.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FixedPool {
+
+        /**
+         * The number of platform threads in the fixed pool.
+         */
+        @Param({"4"})
+        public int threads;
+
+        private ExecutorService pool;
+
+        @Setup
+        public void doSetup() {
+            pool = Executors.newFixedThreadPool(threads);
+        }
+
+        @TearDown
+        public void doTearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Converter {
+
+        /**
+         * The budget of pixel memory in flight, in megabytes.
+         */
+        @Param({"16"})
+        public int budget;
+
+        /**
+         * The executor of the converter: {@code DEFAULT} for its default
+         * executor, which uses virtual threads on JDK 21 or later and a
+         * cached pool of platform threads before that, or {@code FIXED} for
+         * a fixed pool of platform threads, one for each task that fits in
+         * the budget.
+         */
+        @Param({"DEFAULT", "FIXED"})
+        public String executor;
+
+        private ExecutorService pool;
+        private AsyncConverter async;
+
+        @Setup
+        public void doSetup(SourceFiles src) {
+            long bytes = budget * 1024L * 1024L;
+            switch (executor) {
+                case "DEFAULT":
+                    async = new AsyncConverter(bytes);
+                    break;
+                case "FIXED":
+                    int threads = (int) Math.max(1, Math.min(src.count, bytes / src.bytes));
+                    pool = Executors.newFixedThreadPool(threads);
+                    async = new AsyncConverter(pool, bytes);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported executor: " + executor);
+            }
+        }
+
+        @TearDown
+        public void doTearDown() {
+            async.close();
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+        }
+    }
+
+    /**
+     * Loads and converts each image of the batch in a task on a fixed pool
+     * of platform threads, then waits for all of them to complete.
+     *
+     * @param src the source image files
+     * @param cvt the fixed pool
+     * @param blackhole used to consume the converted images
+     */
+    @Benchmark
+    public void convertOnFixedPool(SourceFiles src, FixedPool cvt, Blackhole blackhole) {
+        var futures = new ArrayList<CompletableFuture<WritableImage>>(src.count);
+        for (byte[] file : src.files) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return SwingFXUtils.toFXImage(load(file, src.latency), null);
+                } catch (IOException | InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }, cvt.pool));
+        }
+        futures.forEach(f -> blackhole.consume(f.join()));
+    }
+
+    /**
+     * Loads and converts each image of the batch in a task submitted to the
+     * asynchronous converter, then waits for all of them to complete.
+     *
+     * @param src the source image files
+     * @param cvt the asynchronous converter
+     * @param blackhole used to consume the converted images
+     * @throws InterruptedException if interrupted while waiting for the
+     * budget
+     */
+    @Benchmark
+    public void convertAsync(SourceFiles src, Converter cvt, Blackhole blackhole) throws InterruptedException {
+        var futures = new ArrayList<CompletableFuture<WritableImage>>(src.count);
+        for (byte[] file : src.files) {
+            futures.add(cvt.async.submit(src.bytes, () -> SwingFXUtils.toFXImage(load(file, src.latency), null)));
+        }
+        futures.forEach(f -> blackhole.consume(f.join()));
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Converts images asynchronously for bulk jobs, such as creating thumbnails
+ * or exporting frames, while limiting the pixel memory of the conversions in
+ * flight. Each conversion reserves its bytes from a fixed budget before it is
+ * submitted, so a caller that produces images faster than they are converted
+ * is blocked until earlier conversions complete, rather than filling the heap
+ * with images waiting in the queue of the executor.
+ * <p>
+ * A task that blocks, such as one that reads and decodes its image file
+ * before converting it, ties up a platform thread for its whole duration. By
+ * default, the conversions run on a new virtual thread for each task when the
+ * Java runtime provides them (JDK 21 or later) and on a cached pool of daemon
+ * platform threads otherwise. In either case the budget, not the executor,
+ * bounds the number of tasks in flight.</p>
+ *
+ * @author John Neffenger
+ */
+public class AsyncConverter implements AutoCloseable {
+
+    /**
+     * The number of bytes in each permit of the budget, so that budgets
+     * larger than two gigabytes fit in the permits of a semaphore.
+     */
+    private static final int PERMIT_SIZE = 1024;
+
+    private final Executor executor;
+    private final ExecutorService owned;
+    private final Semaphore budget;
+    private final int permits;
+
+    /**
+     * Creates a new default executor, with one virtual thread per task when
+     * the runtime supports them, or a cached pool of daemon platform threads.
+     *
+     * @return the new executor service
+     */
+    static ExecutorService newDefaultExecutor() {
+        try {
+            var method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            return Executors.newCachedThreadPool(runnable -> {
+                var thread = new Thread(runnable, "AsyncConverter");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Gets the number of bytes of pixels held by an image of the given size
+     * in a 32-bit format.
+     *
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @return the number of bytes
+     */
+    static long getBytes(int width, int height) {
+        return (long) width * height * Integer.BYTES;
+    }
+
+    /**
+     * Creates a converter that runs on the default executor, which it shuts
+     * down when closed.
+     *
+     * @param budget the maximum number of bytes of pixels in flight
+     * @throws IllegalArgumentException if the budget is less than one
+     */
+    public AsyncConverter(long budget) {
+        this(newDefaultExecutor(), budget, true);
+    }
+
+    /**
+     * Creates a converter that runs on the given executor. The executor is
+     * not shut down when the converter is closed.
+     *
+     * @param executor the executor that runs the conversions
+     * @param budget the maximum number of bytes of pixels in flight
+     * @throws IllegalArgumentException if the budget is less than one
+     */
+    public AsyncConverter(Executor executor, long budget) {
+        this(executor, budget, false);
+    }
+
+    private AsyncConverter(Executor executor, long budget, boolean owner) {
+        if (budget < 1) {
+            throw new IllegalArgumentException("Budget must be positive: " + budget);
+        }
+        this.executor = executor;
+        owned = owner ? (ExecutorService) executor : null;
+        // Rounds the budget down and the cost of each task up, so that the
+        // tasks in flight never hold more than the budget between them.
+        permits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budget / PERMIT_SIZE));
+        this.budget = new Semaphore(permits, true);
+    }
+
+    /**
+     * Gets the number of bytes of the budget not reserved by conversions in
+     * flight.
+     *
+     * @return the available bytes, in multiples of one kilobyte
+     */
+    public long getAvailable() {
+        return (long) budget.availablePermits() * PERMIT_SIZE;
+    }
+
+    /**
+     * Submits a task that holds the given number of bytes of pixels until it
+     * completes, blocking until that much of the budget is available. A task
+     * larger than the whole budget waits for all of it and then runs alone.
+     *
+     * @param <T> the type of the result of the task
+     * @param bytes the number of bytes of pixels held by the task
+     * @param task the task, which may also load its source image
+     * @return a future completed with the result of the task, or
+     * exceptionally with any exception thrown by the task
+     * @throws InterruptedException if interrupted while waiting for the
+     * budget
+     * @throws IllegalArgumentException if the number of bytes is negative
+     * @throws RejectedExecutionException if the executor does not accept the
+     * task
+     */
+    public <T> CompletableFuture<T> submit(long bytes, Callable<? extends T> task) throws InterruptedException {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Bytes must not be negative: " + bytes);
+        }
+        int cost = (int) Math.min(permits, (bytes + PERMIT_SIZE - 1) / PERMIT_SIZE);
+        budget.acquire(cost);
+        var future = new CompletableFuture<T>();
+        try {
+            executor.execute(() -> {
+                T result = null;
+                Throwable failure = null;
+                try {
+                    result = task.call();
+                } catch (Throwable t) {
+                    failure = t;
+                }
+                // Releases the budget before waking any dependent stages.
+                budget.release(cost);
+                if (failure == null) {
+                    future.complete(result);
+                } else {
+                    future.completeExceptionally(failure);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            budget.release(cost);
+            throw ex;
+        }
+        return future;
+    }
+
+    /**
+     * Converts the AWT image into a JavaFX image asynchronously with
+     * {@link SwingFXUtils#toFXImage SwingFXUtils.toFXImage}, reserving the
+     * pixels of both images from the budget.
+     *
+     * @param bimg the source AWT image
+     * @param wimg an optional target JavaFX image, or {@code null}
+     * @return a future completed with the supplied JavaFX image or a new one
+     * @throws InterruptedException if interrupted while waiting for the
+     * budget
+     */
+    public CompletableFuture<WritableImage> toFXImage(BufferedImage bimg, WritableImage wimg)
+            throws InterruptedException {
+        long bytes = 2 * getBytes(bimg.getWidth(), bimg.getHeight());
+        return submit(bytes, () -> SwingFXUtils.toFXImage(bimg, wimg));
+    }
+
+    /**
+     * Converts the JavaFX image into an AWT image asynchronously with
+     * {@link SwingFXUtils#fromFXImage SwingFXUtils.fromFXImage}, reserving
+     * the pixels of both images from the budget.
+     *
+     * @param img the source JavaFX image
+     * @param bimg an optional target AWT image, or {@code null}
+     * @return a future completed with the supplied AWT image or a new one,
+     * or with {@code null} if the JavaFX image is not readable
+     * @throws InterruptedException if interrupted while waiting for the
+     * budget
+     */
+    public CompletableFuture<BufferedImage> fromFXImage(Image img, BufferedImage bimg)
+            throws InterruptedException {
+        long bytes = 2 * getBytes((int) img.getWidth(), (int) img.getHeight());
+        return submit(bytes, () -> SwingFXUtils.fromFXImage(img, bimg));
+    }
+
+    /**
+     * Shuts down the default executor, if this converter created it, after
+     * the conversions already submitted complete.
+     */
+    @Override
+    public void close() {
+        if (owned != null) {
+            owned.shutdown();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the total time to preload all frames of an animation, comparing
+ * the conversion of one frame after another with the parallel conversion of
+ * the frames by a {@link BatchConverter} and with the parallel conversion of
+ * bands within each frame by a {@link ParallelConverter}, sweeping the number
+ * of threads and the frame size. Run a quick test of only these benchmarks
+ * with a command like the following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar BatchBenchmarks -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class BatchBenchmarks {
+
+    /**
+     * The file name of the animation scaled to create the source frames.
+     */
+    private static final String FILE_NAME = "doll-dancing.gif";
+
+    @State(Scope.Thread)
+    public static class SourceFrames {
+
+        @Param({"800x600", "1920x1080"})
+        public String size;
+
+        /**
+         * The number of frames in the animation, taken from the start of the
+         * GIF file.
+         */
+        @Param({"16"})
+        public int count;
+
+        private ArrayList<BufferedImage> frames;
+        private int width;
+        private int height;
+
+        @Setup
+        public void doSetup() throws IOException {
+            String[] values = size.split("x");
+            width = Integer.parseInt(values[0]);
+            height = Integer.parseInt(values[1]);
+            frames = new ArrayList<>(count);
+            try (var input = BatchBenchmarks.class.getResourceAsStream("/" + FILE_NAME)) {
+                if (input == null) {
+                    throw new IOException("Error loading image");
+                }
+                try (var stream = ImageIO.createImageInputStream(input)) {
+                    ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+                    reader.setInput(stream);
+                    for (int i = 0; i < count; i++) {
+                        BufferedImage frame = reader.read(i);
+                        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                        Graphics2D graphics = image.createGraphics();
+                        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                        graphics.drawImage(frame, 0, 0, width, height, null);
+                        graphics.dispose();
+                        frames.add(image);
+                    }
+                    reader.dispose();
+                }
+            }
+        }
+
+        @TearDown
+        public void doTearDown() {
+            frames.forEach(BufferedImage::flush);
+            frames.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pool {
+
+        @Param({"1", "2", "4"})
+        public int threads;
+
+        private ForkJoinPool pool;
+        private BatchConverter batch;
+        private ParallelConverter bands;
+
+        @Setup
+        public void doSetup() {
+            pool = new ForkJoinPool(threads);
+            batch = new BatchConverter(pool);
+            bands = new ParallelConverter(pool, ParallelConverter.BAND_HEIGHT);
+        }
+
+        @TearDown
+        public void doTearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetJfxImages {
+
+        private WritableImage[] images;
+
+        @Setup
+        public void doSetup(SourceFrames awt) {
+            images = new WritableImage[awt.count];
+            for (int i = 0; i < images.length; i++) {
+                images[i] = new WritableImage(awt.width, awt.height);
+            }
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetPackedBuffer {
+
+        private ByteBuffer buffer;
+
+        @Setup
+        public void doSetup(SourceFrames awt) {
+            buffer = ByteBuffer.allocateDirect(BatchConverter.getOffsets(awt.frames)[awt.count] * Integer.BYTES);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TempArray {
+
+        private int[] array;
+
+        @Setup
+        public void doSetup(SourceFrames awt) {
+            array = new int[awt.width * awt.height];
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    /**
+     * Converts the frames one after another on the benchmark thread into
+     * preallocated JavaFX images (correct).
+     *
+     * @param awt the source frames
+     * @param jfx the target JavaFX images
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void preloadSequential(SourceFrames awt, TargetJfxImages jfx) {
+        for (int i = 0; i < awt.count; i++) {
+            jfx.images[i] = SwingFXUtils.toFXImage(awt.frames.get(i), jfx.images[i]);
+        }
+    }
+
+    /**
+     * Converts the frames one after another, copying each frame in parallel
+     * bands of rows. This method copies pixels in the INT_ARGB format as
+     * INT_ARGB pixels (correct).
+     *
+     * @param awt the source frames
+     * @param cvt the pool of converting threads
+     * @param tmp the intermediate array in INT_ARGB pixel format
+     * @param jfx the target JavaFX images
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void preloadBands(SourceFrames awt, Pool cvt, TempArray tmp, TargetJfxImages jfx) {
+        for (int i = 0; i < awt.count; i++) {
+            cvt.bands.setPixels(awt.frames.get(i), tmp.array, jfx.images[i].getPixelWriter());
+        }
+    }
+
+    /**
+     * Converts the frames in parallel, one frame per task, into preallocated
+     * JavaFX images (correct).
+     *
+     * @param awt the source frames
+     * @param cvt the pool of converting threads
+     * @param jfx the target JavaFX images
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void preloadImages(SourceFrames awt, Pool cvt, TargetJfxImages jfx) {
+        cvt.batch.toFXImages(awt.frames, jfx.images);
+    }
+
+    /**
+     * Converts the frames in parallel, one frame per task, into one packed
+     * direct buffer of BYTE_BGRA_PRE pixels (correct).
+     *
+     * @param awt the source frames
+     * @param cvt the pool of converting threads
+     * @param jfx the target packed buffer
+     * @param blackhole used to consume the frame offsets
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void preloadBuffer(SourceFrames awt, Pool cvt, TargetPackedBuffer jfx, Blackhole blackhole) {
+        blackhole.consume(cvt.batch.pack(awt.frames, jfx.buffer));
+    }
+}
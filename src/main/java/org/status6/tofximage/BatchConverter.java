@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Converts a whole sequence of AWT images, such as the frames of an
+ * animation, in parallel across the frames. The list of frames is split in
+ * half recursively by tasks in a fork/join pool, so idle threads steal the
+ * remaining halves from busy ones and frames of different sizes or types
+ * still balance across the threads. Each frame is converted by a single
+ * thread, unlike the bands of {@link ParallelConverter}, so no two threads
+ * ever write to the same target.
+ *
+ * @author John Neffenger
+ */
+public class BatchConverter {
+
+    /**
+     * Converts one range of frames.
+     */
+    @FunctionalInterface
+    private interface Range {
+
+        void convert(int from, int to);
+    }
+
+    /**
+     * Splits a range of frames in half until it holds a single frame.
+     */
+    private static class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final Range range;
+
+        RangeTask(int from, int to, Range range) {
+            this.from = from;
+            this.to = to;
+            this.range = range;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                range.convert(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(from, middle, range), new RangeTask(middle, to, range));
+            }
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a converter that runs on the common fork/join pool.
+     */
+    public BatchConverter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a converter that runs on the given fork/join pool.
+     *
+     * @param pool the pool that runs the conversion tasks
+     */
+    public BatchConverter(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Converts each AWT image into the JavaFX image at the same index with
+     * {@link SwingFXUtils#toFXImage SwingFXUtils.toFXImage}. A target that is
+     * {@code null} or too small is replaced in the array by a new JavaFX
+     * image.
+     *
+     * @param sources the source AWT images
+     * @param targets the preallocated target JavaFX images, or {@code null}
+     * entries, with the same length as the list of sources
+     * @throws IllegalArgumentException if the number of targets differs from
+     * the number of sources
+     */
+    public void toFXImages(List<BufferedImage> sources, WritableImage[] targets) {
+        if (targets.length != sources.size()) {
+            throw new IllegalArgumentException("Target count does not match: " + targets.length);
+        }
+        if (!sources.isEmpty()) {
+            pool.invoke(new RangeTask(0, sources.size(), (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    targets[i] = SwingFXUtils.toFXImage(sources.get(i), targets[i]);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Gets the offsets of the AWT images when packed one after another
+     * without gaps, each with a scanline stride equal to its width.
+     *
+     * @param sources the source AWT images
+     * @return the offset in pixels of each image, followed by the total
+     * number of pixels
+     * @throws IllegalArgumentException if the images together have more
+     * bytes of pixels than a buffer can hold
+     */
+    public static int[] getOffsets(List<BufferedImage> sources) {
+        int[] offsets = new int[sources.size() + 1];
+        long total = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            offsets[i] = (int) total;
+            BufferedImage image = sources.get(i);
+            total += (long) image.getWidth() * image.getHeight();
+            if (total * Integer.BYTES > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Images are too large to pack: " + total + " pixels");
+            }
+        }
+        offsets[sources.size()] = (int) total;
+        return offsets;
+    }
+
+    /**
+     * Writes the AWT images one after another into a single byte buffer of
+     * BYTE_BGRA_PRE pixels, such as a direct buffer allocated off the heap,
+     * using a {@link BgraPreWriter} in each task. Frame <i>i</i> starts at the
+     * pixel offset {@code offsets[i]} returned by {@link #getOffsets}. The
+     * position of the buffer is not changed.
+     *
+     * @param sources the source AWT images
+     * @param buffer the target buffer, large enough for all of the images
+     * @return the offset in pixels of each image, followed by the total
+     * number of pixels
+     * @throws IllegalArgumentException if the images together have more
+     * bytes of pixels than a buffer can hold
+     * @throws IndexOutOfBoundsException if the images do not fit in the
+     * buffer
+     */
+    public int[] pack(List<BufferedImage> sources, ByteBuffer buffer) {
+        int[] offsets = getOffsets(sources);
+        if ((long) offsets[sources.size()] * Integer.BYTES > buffer.capacity()) {
+            throw new IndexOutOfBoundsException("Images do not fit in buffer");
+        }
+        if (!sources.isEmpty()) {
+            pool.invoke(new RangeTask(0, sources.size(), (from, to) -> {
+                var writer = new BgraPreWriter();
+                for (int i = from; i < to; i++) {
+                    BufferedImage image = sources.get(i);
+                    writer.write(image, buffer, offsets[i], image.getWidth());
+                }
+            }));
+        }
+        return offsets;
+    }
+}
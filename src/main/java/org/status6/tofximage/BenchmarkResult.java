@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.util.Arrays;
+import org.apache.commons.math3.distribution.TDistribution;
+import org.openjdk.jmh.util.ListStatistics;
+
+/**
+ * The result of one benchmark method in one run, as stored by
+ * {@link ResultStore}. A run is identified by the base name of its result
+ * files, which the script <i>bin/benchmarks.sh</i> creates from the host
+ * name, the code name of the operating system, the name of the JDK and the
+ * date, as in {@code touchc-trusty-jdk-14.0.1_7-2020-06-12}.
+ *
+ * @author John Neffenger
+ */
+final class BenchmarkResult {
+
+    /**
+     * The confidence level of the error reported by JMH.
+     */
+    static final double JMH_CONFIDENCE = 0.999;
+
+    private final String run;
+    private final String host;
+    private final String os;
+    private final String jdk;
+    private final String date;
+    private final String benchmark;
+    private final String params;
+    private final String mode;
+    private final long count;
+    private final double score;
+    private final double error;
+    private final String unit;
+    private final double[] samples;
+
+    /**
+     * Creates a benchmark result.
+     *
+     * @param run the name of the run
+     * @param benchmark the name of the benchmark as {@code Class.method}, with
+     * the name of any secondary result after a colon
+     * @param params the parameters as comma-separated {@code key=value}
+     * pairs in the order of their keys, or the empty string
+     * @param mode the abbreviation of the benchmark mode, such as
+     * {@code thrpt}
+     * @param count the number of measurement iterations
+     * @param score the score
+     * @param error the half-width of the 99.9 percent confidence interval, or
+     * {@code NaN} if not available
+     * @param unit the unit of the score
+     * @param samples the score of each measurement iteration, or
+     * {@code null} if not available
+     * @throws IllegalArgumentException if the run name is not of the form
+     * {@code host-os-jdk-yyyy-mm-dd}
+     */
+    BenchmarkResult(String run, String benchmark, String params, String mode, long count,
+            double score, double error, String unit, double[] samples) {
+        String[] parts = run.split("-");
+        if (parts.length < 6 || !run.matches(".*-\\d{4}-\\d{2}-\\d{2}")) {
+            throw new IllegalArgumentException("Run is not of the form host-os-jdk-yyyy-mm-dd: " + run);
+        }
+        this.run = run;
+        this.host = parts[0];
+        this.os = parts[1];
+        this.jdk = String.join("-", Arrays.copyOfRange(parts, 2, parts.length - 3));
+        this.date = run.substring(run.length() - 10);
+        this.benchmark = benchmark;
+        this.params = params;
+        this.mode = mode;
+        this.count = count;
+        this.score = score;
+        this.error = error;
+        this.unit = unit;
+        this.samples = samples;
+    }
+
+    String getRun() {
+        return run;
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    String getOs() {
+        return os;
+    }
+
+    String getJdk() {
+        return jdk;
+    }
+
+    String getDate() {
+        return date;
+    }
+
+    String getBenchmark() {
+        return benchmark;
+    }
+
+    String getParams() {
+        return params;
+    }
+
+    String getMode() {
+        return mode;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    double getScore() {
+        return score;
+    }
+
+    double getError() {
+        return error;
+    }
+
+    String getUnit() {
+        return unit;
+    }
+
+    double[] getSamples() {
+        return samples;
+    }
+
+    /**
+     * Gets the key of this result within its run.
+     *
+     * @return the name of the benchmark followed by its parameters
+     */
+    String getKey() {
+        return params.isEmpty() ? benchmark : benchmark + " (" + params + ")";
+    }
+
+    /**
+     * Checks whether this is the primary result of a benchmark method, rather
+     * than a secondary result such as a counter or a profiler metric.
+     *
+     * @return {@code true} if this is a primary result; otherwise
+     * {@code false}
+     */
+    boolean isPrimary() {
+        return benchmark.indexOf(':') == -1;
+    }
+
+    /**
+     * Checks whether a higher score is better, which is the case only for
+     * the throughput mode. The other modes measure time per operation.
+     *
+     * @return {@code true} if a higher score is better; otherwise
+     * {@code false}
+     */
+    boolean isHigherBetter() {
+        return mode.equals("thrpt");
+    }
+
+    /**
+     * Gets the confidence interval of the score. The interval is computed
+     * from the samples when they are available. Otherwise, the standard
+     * deviation is recovered from the 99.9 percent error reported by JMH and
+     * the number of iterations, and the interval is computed from the
+     * Student's t-distribution at the requested level.
+     *
+     * @param confidence the confidence level, such as 0.99
+     * @return the lower and upper bounds of the interval, or {@code null} if
+     * the result has too few iterations to estimate one
+     */
+    double[] getInterval(double confidence) {
+        if (samples != null && samples.length > 1) {
+            return new ListStatistics(samples).getConfidenceIntervalAt(confidence);
+        }
+        if (count < 2 || !Double.isFinite(error)) {
+            return null;
+        }
+        var t = new TDistribution(count - 1);
+        double sd = error * Math.sqrt(count) / t.inverseCumulativeProbability(1 - (1 - JMH_CONFIDENCE) / 2);
+        double half = t.inverseCumulativeProbability(1 - (1 - confidence) / 2) * sd / Math.sqrt(count);
+        return new double[]{score - half, score + half};
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.io.IOException;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * Runs the benchmarks like the JMH runner, but always with the garbage
+ * collection profiler, so that every run reports the bytes allocated per
+ * operation and the number of garbage collections for each method, and with
+ * the {@link StateProfiler}, so that it reports the results recorded by the
+ * benchmark states. This
+ * class is the main class of the benchmarks JAR file. Options that only
+ * print information, such as {@code -h} and {@code -l}, are passed on to the
+ * JMH runner unchanged.
+ *
+ * @author John Neffenger
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Checks whether the options already include a profiler.
+     *
+     * @param options the command-line options
+     * @param alias the short name of the profiler, or {@code null}
+     * @param type the class of the profiler
+     * @return {@code true} if the profiler is included; otherwise
+     * {@code false}
+     */
+    private static boolean hasProfiler(CommandLineOptions options, String alias, Class<?> type) {
+        for (ProfilerConfig config : options.getProfilers()) {
+            String name = config.getKlass();
+            if (name.equals(alias) || name.equals(type.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the benchmarks selected by the command-line options with the
+     * garbage collection profiler and the state profiler.
+     *
+     * @param args the JMH command-line options
+     * @throws CommandLineOptionException if the options are not valid
+     * @throws RunnerException if an error occurs running the benchmarks
+     * @throws IOException if an error occurs printing information
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        var options = new CommandLineOptions(args);
+        if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+                || options.shouldListProfilers() || options.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        var builder = new OptionsBuilder().parent(options);
+        if (!hasProfiler(options, "gc", GCProfiler.class)) {
+            builder.addProfiler(GCProfiler.class);
+        }
+        if (!hasProfiler(options, null, StateProfiler.class)) {
+            builder.addProfiler(StateProfiler.class);
+        }
+        new Runner(builder.build()).run();
+    }
+}
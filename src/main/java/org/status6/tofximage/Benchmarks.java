@@ -16,10 +16,13 @@
  */
 package org.status6.tofximage;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -35,7 +38,10 @@ import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -52,6 +58,18 @@ import org.openjdk.jmh.infra.Blackhole;
  * }</pre>
  * <p>
  * Run the benchmarks with their default options for a more thorough test.</p>
+ * <p>
+ * The benchmarks convert the frames of an animation by default. Measure how
+ * a conversion scales with the size of the image by running it on generated
+ * frames, reading its {@code megapixels} counter for the throughput in
+ * megapixels per second:</p>
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar 'Benchmarks\.(toFXImage|setArgbAsArgb|putDirectIntoInts)$' \
+ *   -p content=OPAQUE,BINARY,TRANSLUCENT \
+ *   -p size=1280x720,1920x1080,3840x2160,7680x4320 -f 1 -i 1 -wi 1
+ * }</pre>
  *
  * @author John Neffenger
  */
@@ -63,10 +81,10 @@ public class Benchmarks {
     private static final String FILE_NAME = "doll-dancing.gif";
 
     /**
-     * Whether to clear the background of the intermediate AWT image for each
-     * frame. Set to {@code true} if the source AWT image contains transparency.
+     * The converter that copies bands of rows in parallel on the common
+     * fork/join pool.
      */
-    private static final boolean CLEAR_FRAMES = false;
+    private static final ParallelConverter PARALLEL = new ParallelConverter();
 
     /**
      * Whether to save each converted image to a file in PNG format.
@@ -75,17 +93,17 @@ public class Benchmarks {
 
     /**
      * Clears the background of the intermediate AWT image to be fully
-     * transparent. Call this method before drawing an image with transparency
-     * into an intermediate AWT image.
+     * transparent if the current source frame is not opaque, as classified
+     * once for each frame in the setup. Call this method before drawing the
+     * frame into an intermediate AWT image.
      *
      * @param graphics the graphics object of the intermediate AWT image
-     * @param width the image width in pixels
-     * @param height the image height in pixels
+     * @param awt the source AWT image
      */
-    private static void clearRect(Graphics2D graphics, int width, int height) {
-        if (CLEAR_FRAMES) {
+    private static void clearRect(Graphics2D graphics, SourceAwtImage awt) {
+        if (!awt.opaque[awt.index]) {
             graphics.setBackground(new Color(0, true));
-            graphics.clearRect(0, 0, width, height);
+            graphics.clearRect(0, 0, awt.width, awt.height);
         }
     }
 
@@ -114,6 +132,46 @@ public class Benchmarks {
         }
     }
 
+    /**
+     * Finds the bounding box of the pixels that differ between two AWT images
+     * of the same size.
+     *
+     * @param previous the previous frame
+     * @param current the current frame
+     * @param before a row of the previous frame, at least as wide as a frame
+     * @param after a row of the current frame, at least as wide as a frame
+     * @return the bounds of the changed pixels, or an empty rectangle if the
+     * frames are identical
+     */
+    private static Rectangle getChangedBounds(BufferedImage previous, BufferedImage current,
+            int[] before, int[] after) {
+        int width = current.getWidth();
+        int height = current.getHeight();
+        int minX = width;
+        int minY = height;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = 0; y < height; y++) {
+            previous.getRGB(0, y, width, 1, before, 0, width);
+            current.getRGB(0, y, width, 1, after, 0, width);
+            int left = 0;
+            while (left < width && before[left] == after[left]) {
+                left++;
+            }
+            if (left < width) {
+                int right = width - 1;
+                while (before[right] == after[right]) {
+                    right--;
+                }
+                minX = Math.min(minX, left);
+                maxX = Math.max(maxX, right);
+                minY = Math.min(minY, y);
+                maxY = y;
+            }
+        }
+        return maxY < 0 ? new Rectangle() : new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
     /**
      * Loads all frames of a GIF image file.
      *
@@ -143,10 +201,90 @@ public class Benchmarks {
         return list;
     }
 
+    /**
+     * Gets the AWT image type of the given name.
+     *
+     * @param name the name of the type without its {@code TYPE_} prefix
+     * @return the AWT image type
+     * @throws IllegalArgumentException if the type is not supported
+     */
+    private static int getAwtType(String name) {
+        switch (name) {
+            case "INT_RGB":
+                return BufferedImage.TYPE_INT_RGB;
+            case "INT_ARGB":
+                return BufferedImage.TYPE_INT_ARGB;
+            case "INT_ARGB_PRE":
+                return BufferedImage.TYPE_INT_ARGB_PRE;
+            case "INT_BGR":
+                return BufferedImage.TYPE_INT_BGR;
+            case "3BYTE_BGR":
+                return BufferedImage.TYPE_3BYTE_BGR;
+            case "4BYTE_ABGR":
+                return BufferedImage.TYPE_4BYTE_ABGR;
+            case "4BYTE_ABGR_PRE":
+                return BufferedImage.TYPE_4BYTE_ABGR_PRE;
+            case "BYTE_GRAY":
+                return BufferedImage.TYPE_BYTE_GRAY;
+            default:
+                throw new IllegalArgumentException("Unsupported image type: " + name);
+        }
+    }
+
+    /**
+     * Draws the frames into new AWT images of the given type, keeping only as
+     * many frames as fit in the memory budget of {@link SyntheticFrames}.
+     *
+     * @param frames the frames to convert
+     * @param type the AWT image type of the new frames
+     * @return a list of the converted frames
+     */
+    private static ArrayList<BufferedImage> convertFrames(ArrayList<BufferedImage> frames, int type) {
+        int width = frames.get(0).getWidth();
+        int height = frames.get(0).getHeight();
+        int count = Math.min(frames.size(), SyntheticFrames.getCount(width, height));
+        var list = new ArrayList<BufferedImage>(count);
+        for (int i = 0; i < count; i++) {
+            var image = new BufferedImage(width, height, type);
+            Graphics2D graphics = image.createGraphics();
+            graphics.setComposite(AlphaComposite.Src);
+            graphics.drawImage(frames.get(i), 0, 0, null);
+            graphics.dispose();
+            list.add(image);
+        }
+        return list;
+    }
+
     @State(Scope.Thread)
     public static class SourceAwtImage {
 
+        /**
+         * The content of the frames: {@code GIF} for the frames of the
+         * animation, or one of the variants of {@link SyntheticFrames} for
+         * generated frames in TYPE_INT_ARGB format. The benchmarks that expand
+         * palette indices require the animation.
+         */
+        @Param({"GIF"})
+        public String content;
+
+        /**
+         * The size of the frames as <i>width</i>x<i>height</i>. The animation
+         * is available only at its own size.
+         */
+        @Param({"800x600"})
+        public String size;
+
+        /**
+         * The type of the frames: {@code ORIGINAL} to keep the type of the
+         * content, or the name of an AWT image type without its {@code TYPE_}
+         * prefix. Frames of another type are drawn from the content and are
+         * limited in number by the memory budget of {@link SyntheticFrames}.
+         */
+        @Param({"ORIGINAL"})
+        public String type;
+
         private ArrayList<BufferedImage> frames;
+        private boolean[] opaque;
         private int width;
         private int height;
         private int index;
@@ -157,9 +295,27 @@ public class Benchmarks {
 
         @Setup
         public void doSetup() {
-            frames = loadFrames(FILE_NAME);
-            width = frames.get(0).getWidth();
-            height = frames.get(0).getHeight();
+            String[] values = size.split("x");
+            width = Integer.parseInt(values[0]);
+            height = Integer.parseInt(values[1]);
+            if (content.equals("GIF")) {
+                frames = loadFrames(FILE_NAME);
+                if (frames.get(0).getWidth() != width || frames.get(0).getHeight() != height) {
+                    throw new IllegalArgumentException("Animation is not of size " + size);
+                }
+            } else {
+                var variant = SyntheticFrames.Content.valueOf(content);
+                frames = SyntheticFrames.createList(width, height, variant);
+            }
+            if (!type.equals("ORIGINAL")) {
+                frames = convertFrames(frames, getAwtType(type));
+            }
+            // Classifies each frame once, outside of the benchmark methods.
+            var alpha = new AlphaClassifier();
+            opaque = new boolean[frames.size()];
+            for (int i = 0; i < opaque.length; i++) {
+                opaque[i] = alpha.classify(frames.get(i)) == AlphaClassifier.AlphaClass.OPAQUE;
+            }
             index = 0;
         }
 
@@ -169,6 +325,70 @@ public class Benchmarks {
         }
     }
 
+    @State(Scope.Thread)
+    public static class FrameChanges {
+
+        private ArrayList<Rectangle> bounds;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            // The first frame is copied in full because the target is empty.
+            bounds = new ArrayList<>(awt.frames.size());
+            bounds.add(new Rectangle(0, 0, awt.width, awt.height));
+            int[] before = new int[awt.width];
+            int[] after = new int[awt.width];
+            for (int i = 1; i < awt.frames.size(); i++) {
+                bounds.add(getChangedBounds(awt.frames.get(i - 1), awt.frames.get(i), before, after));
+            }
+        }
+
+        @TearDown
+        public void doTearDown() {
+            bounds.clear();
+        }
+    }
+
+    /**
+     * Counts the bytes written to the target image. JMH reports the counter as
+     * a rate alongside the primary score, so dividing it by the score gives
+     * the number of bytes copied per frame.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class CopyCounter {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void doSetup() {
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Counts the megapixels converted. JMH reports the counter as a rate
+     * alongside the primary score, so results can be compared across frame
+     * sizes in megapixels per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class PixelCounter {
+
+        public double megapixels;
+
+        private double frameMegapixels;
+
+        @Setup(Level.Iteration)
+        public void doSetup(SourceAwtImage awt) {
+            megapixels = 0;
+            frameMegapixels = awt.width * awt.height / 1e6;
+        }
+
+        private void count() {
+            megapixels += frameMegapixels;
+        }
+    }
+
     @State(Scope.Thread)
     public static class TargetJfxImage {
 
@@ -280,6 +500,53 @@ public class Benchmarks {
         }
     }
 
+    @State(Scope.Thread)
+    public static class TempWriter {
+
+        private BgraPreWriter writer;
+
+        @Setup
+        public void doSetup() {
+            writer = new BgraPreWriter();
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TempRows {
+
+        private int[] before;
+        private int[] after;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            before = new int[awt.width];
+            after = new int[awt.width];
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TempRow {
+
+        private int[] row;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            row = new int[awt.width];
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
     /**
      * Converts pixel by pixel using a sequential stream. This method copies
      * pixels in the INT_ARGB format as INT_ARGB pixels (correct).
@@ -320,6 +587,24 @@ public class Benchmarks {
         awt.nextFrame();
     }
 
+    /**
+     * Converts band by band using a fork/join pool. Each band of rows is copied
+     * into an intermediate array and then written to the JavaFX image with a
+     * single call to its {@code PixelWriter}. This method copies pixels in the
+     * INT_ARGB format as INT_ARGB pixels (correct).
+     *
+     * @param awt the source AWT image
+     * @param tmp the intermediate array in INT_ARGB pixel format
+     * @param jfx the target JavaFX image
+     */
+    @Benchmark
+    public void forEachBandParallel(SourceAwtImage awt, TempArray tmp, TargetJfxImage jfx) {
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        PARALLEL.setPixels(awtImage, tmp.array, jfx.image.getPixelWriter());
+        saveImage("forEachBandParallel-" + awt.index, jfx.image);
+        awt.nextFrame();
+    }
+
     /**
      * Converts pixel by pixel using nested <i>for loops</i>. This method copies
      * pixels in the INT_ARGB format as INT_ARGB pixels (correct).
@@ -357,7 +642,7 @@ public class Benchmarks {
     @Benchmark
     public void putArgbPreIntoBytes(SourceAwtImage awt, TempArgbPreImage tmp, TargetByteBuffer jfx, Blackhole blackhole) {
         BufferedImage awtImage = awt.frames.get(awt.index);
-        clearRect(tmp.graphics, awt.width, awt.height);
+        clearRect(tmp.graphics, awt);
         tmp.graphics.drawImage(awtImage, 0, 0, null);
         int[] data = ((DataBufferInt) tmp.image.getRaster().getDataBuffer()).getData();
         jfx.buffer.asIntBuffer().put(data);
@@ -383,7 +668,7 @@ public class Benchmarks {
     @Benchmark
     public void putArgbPreIntoInts(SourceAwtImage awt, TempArgbPreImage tmp, TargetIntBuffer jfx, Blackhole blackhole) {
         BufferedImage awtImage = awt.frames.get(awt.index);
-        clearRect(tmp.graphics, awt.width, awt.height);
+        clearRect(tmp.graphics, awt);
         tmp.graphics.drawImage(awtImage, 0, 0, null);
         int[] data = ((DataBufferInt) tmp.image.getRaster().getDataBuffer()).getData();
         jfx.buffer.put(data);
@@ -418,6 +703,29 @@ public class Benchmarks {
         awt.nextFrame();
     }
 
+    /**
+     * Writes the pixels of the source AWT image directly into the byte buffer
+     * of a {@code PixelBuffer} with a {@link BgraPreWriter}, reading the source
+     * raster once and premultiplying each pixel on the way. This method copies
+     * pixels in the INT_ARGB format into a byte buffer as BYTE_BGRA_PRE pixels
+     * (correct).
+     *
+     * @param awt the source AWT image
+     * @param tmp the reusable writer
+     * @param jfx the target JavaFX image backed by a
+     * {@code PixelBuffer<ByteBuffer>} in BYTE_BGRA_PRE pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putBgraPreIntoBytes(SourceAwtImage awt, TempWriter tmp, TargetByteBuffer jfx, Blackhole blackhole) {
+        tmp.writer.write(awt.frames.get(awt.index), jfx.buffer);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+        saveImage("putBgraPreIntoBytes-" + awt.index, jfx.image);
+        awt.nextFrame();
+    }
+
     /**
      * Gets the pixels of the source AWT image directly into the integer buffer
      * of a {@code PixelBuffer}. This method copies pixels in the INT_ARGB
@@ -426,19 +734,192 @@ public class Benchmarks {
      * @param awt the source AWT image
      * @param jfx the target JavaFX image backed by a
      * {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE pixel format
+     * @param counter the megapixels converted
      * @param blackhole used to simulate a call to
      * {@code PixelBuffer.updateBuffer}
      */
     @Benchmark
-    public void putDirectIntoInts(SourceAwtImage awt, TargetIntBuffer jfx, Blackhole blackhole) {
+    public void putDirectIntoInts(SourceAwtImage awt, TargetIntBuffer jfx, PixelCounter counter,
+            Blackhole blackhole) {
         BufferedImage awtImage = awt.frames.get(awt.index);
         awtImage.getRGB(0, 0, awt.width, awt.height, jfx.buffer.array(), 0, awt.width);
+        counter.count();
         // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
         blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
         saveImage("putDirectIntoInts-" + awt.index, jfx.image);
         awt.nextFrame();
     }
 
+    /**
+     * Gets the pixels of the source AWT image row by row into an intermediate
+     * array; then premultiplies each row into the integer buffer of a
+     * {@code PixelBuffer}. This method copies pixels in the INT_ARGB format
+     * into an integer buffer as INT_ARGB_PRE pixels (correct).
+     *
+     * @param awt the source AWT image
+     * @param tmp the intermediate row in INT_ARGB pixel format
+     * @param jfx the target JavaFX image backed by a
+     * {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putPremultipliedIntoInts(SourceAwtImage awt, TempRow tmp, TargetIntBuffer jfx, Blackhole blackhole) {
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        for (int y = 0; y < awt.height; y++) {
+            awtImage.getRGB(0, y, awt.width, 1, tmp.row, 0, awt.width);
+            AlphaConverter.premultiply(tmp.row, 0, jfx.buffer, y * awt.width, awt.width);
+        }
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+        saveImage("putPremultipliedIntoInts-" + awt.index, jfx.image);
+        awt.nextFrame();
+    }
+
+    /**
+     * Gets the pixels of the source AWT image row by row into an intermediate
+     * array; then premultiplies each row into the byte buffer of a
+     * {@code PixelBuffer}. This method copies pixels in the INT_ARGB format
+     * into a byte buffer with little-endian byte order as BYTE_BGRA_PRE pixels
+     * (correct).
+     *
+     * @param awt the source AWT image
+     * @param tmp the intermediate row in INT_ARGB pixel format
+     * @param jfx the target JavaFX image backed by a
+     * {@code PixelBuffer<ByteBuffer>} in BYTE_BGRA_PRE pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putPremultipliedIntoBytes(SourceAwtImage awt, TempRow tmp, TargetByteBuffer jfx, Blackhole blackhole) {
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        for (int y = 0; y < awt.height; y++) {
+            awtImage.getRGB(0, y, awt.width, 1, tmp.row, 0, awt.width);
+            AlphaConverter.premultiply(tmp.row, 0, jfx.buffer, y * awt.width, awt.width);
+        }
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+        saveImage("putPremultipliedIntoBytes-" + awt.index, jfx.image);
+        awt.nextFrame();
+    }
+
+    /**
+     * Looks up the palette indices of the source AWT image directly into the
+     * integer buffer of a {@code PixelBuffer}. This method copies indexed
+     * pixels through a premultiplied lookup table into an integer buffer as
+     * INT_ARGB_PRE pixels (correct).
+     *
+     * @param awt the source AWT image with an indexed color model
+     * @param jfx the target JavaFX image backed by a
+     * {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putIndexedIntoInts(SourceAwtImage awt, TargetIntBuffer jfx, Blackhole blackhole) {
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        int[] palette = IndexedPixels.getPalette((IndexColorModel) awtImage.getColorModel(), null);
+        IndexedPixels.expand(awtImage, palette, jfx.buffer.array(), 0, awt.width);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+        saveImage("putIndexedIntoInts-" + awt.index, jfx.image);
+        awt.nextFrame();
+    }
+
+    /**
+     * Gets only the pixels that changed since the previous frame of the source
+     * AWT image directly into the integer buffer of a {@code PixelBuffer};
+     * then reports the bounds of the changed pixels as the dirty region. This
+     * method copies pixels in the INT_ARGB format into an integer buffer as
+     * INT_ARGB_PRE pixels (wrong alpha).
+     *
+     * @param awt the source AWT image
+     * @param dirty the bounds of the changed pixels in each frame
+     * @param jfx the target JavaFX image backed by a
+     * {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE pixel format
+     * @param counter the number of bytes copied
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putChangesIntoInts(SourceAwtImage awt, FrameChanges dirty, TargetIntBuffer jfx,
+            CopyCounter counter, Blackhole blackhole) {
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        Rectangle r = dirty.bounds.get(awt.index);
+        if (r.isEmpty()) {
+            // Simulates PixelBuffer.updateBuffer with nothing to update
+            blackhole.consume(Rectangle2D.EMPTY);
+        } else {
+            awtImage.getRGB(r.x, r.y, r.width, r.height, jfx.buffer.array(), r.y * awt.width + r.x, awt.width);
+            counter.bytes += r.width * r.height * Integer.BYTES;
+            // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+            blackhole.consume(new Rectangle2D(r.x, r.y, r.width, r.height));
+        }
+        saveImage("putChangesIntoInts-" + awt.index, jfx.image);
+        awt.nextFrame();
+    }
+
+    /**
+     * Compares each frame of the source AWT image with the previous frame to
+     * find the bounds of the changed pixels, as a player without precomputed
+     * bounds must; then gets only those pixels directly into the integer
+     * buffer of a {@code PixelBuffer} and reports their bounds as the dirty
+     * region. The first frame is compared with the last, which the target
+     * holds when the animation repeats. This method copies pixels in the
+     * INT_ARGB format into an integer buffer as INT_ARGB_PRE pixels (wrong
+     * alpha).
+     *
+     * @param awt the source AWT image
+     * @param tmp the rows of the previous and current frames being compared
+     * @param jfx the target JavaFX image backed by a
+     * {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE pixel format
+     * @param counter the number of bytes copied
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void diffThenPutChangesIntoInts(SourceAwtImage awt, TempRows tmp, TargetIntBuffer jfx,
+            CopyCounter counter, Blackhole blackhole) {
+        BufferedImage previous = awt.frames.get(awt.index == 0 ? awt.frames.size() - 1 : awt.index - 1);
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        Rectangle r = getChangedBounds(previous, awtImage, tmp.before, tmp.after);
+        if (r.isEmpty()) {
+            // Simulates PixelBuffer.updateBuffer with nothing to update
+            blackhole.consume(Rectangle2D.EMPTY);
+        } else {
+            awtImage.getRGB(r.x, r.y, r.width, r.height, jfx.buffer.array(), r.y * awt.width + r.x, awt.width);
+            counter.bytes += r.width * r.height * Integer.BYTES;
+            // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+            blackhole.consume(new Rectangle2D(r.x, r.y, r.width, r.height));
+        }
+        saveImage("diffThenPutChangesIntoInts-" + awt.index, jfx.image);
+        awt.nextFrame();
+    }
+
+    /**
+     * Gets the pixels of the source AWT image directly into the integer buffer
+     * of a {@code PixelBuffer}, counting the bytes copied for comparison with
+     * {@link #putChangesIntoInts}. This method copies pixels in the INT_ARGB
+     * format into an integer buffer as INT_ARGB_PRE pixels (wrong alpha).
+     *
+     * @param awt the source AWT image
+     * @param jfx the target JavaFX image backed by a
+     * {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE pixel format
+     * @param counter the number of bytes copied
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putFramesIntoInts(SourceAwtImage awt, TargetIntBuffer jfx, CopyCounter counter, Blackhole blackhole) {
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        awtImage.getRGB(0, 0, awt.width, awt.height, jfx.buffer.array(), 0, awt.width);
+        counter.bytes += awt.width * awt.height * Integer.BYTES;
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+        saveImage("putFramesIntoInts-" + awt.index, jfx.image);
+        awt.nextFrame();
+    }
+
     /**
      * Draws the source AWT image into an intermediate AWT image; then gets the
      * intermediate raster data and writes it to the JavaFX image using a
@@ -448,15 +929,17 @@ public class Benchmarks {
      * @param awt the source AWT image
      * @param tmp the intermediate AWT image in INT_ARGB pixel format
      * @param jfx the target JavaFX image
+     * @param counter the megapixels converted
      */
     @Benchmark
-    public void setArgbAsArgb(SourceAwtImage awt, TempArgbImage tmp, TargetJfxImage jfx) {
+    public void setArgbAsArgb(SourceAwtImage awt, TempArgbImage tmp, TargetJfxImage jfx, PixelCounter counter) {
         BufferedImage awtImage = awt.frames.get(awt.index);
-        clearRect(tmp.graphics, awt.width, awt.height);
+        clearRect(tmp.graphics, awt);
         tmp.graphics.drawImage(awtImage, 0, 0, null);
         int[] data = ((DataBufferInt) tmp.image.getRaster().getDataBuffer()).getData();
         jfx.image.getPixelWriter().setPixels(0, 0, awt.width, awt.height,
                 PixelFormat.getIntArgbInstance(), data, 0, awt.width);
+        counter.count();
         saveImage("setArgbAsArgb-" + awt.index, jfx.image);
         awt.nextFrame();
     }
@@ -474,7 +957,7 @@ public class Benchmarks {
     @Benchmark
     public void setArgbAsArgbPre(SourceAwtImage awt, TempArgbImage tmp, TargetJfxImage jfx) {
         BufferedImage awtImage = awt.frames.get(awt.index);
-        clearRect(tmp.graphics, awt.width, awt.height);
+        clearRect(tmp.graphics, awt);
         tmp.graphics.drawImage(awtImage, 0, 0, null);
         int[] data = ((DataBufferInt) tmp.image.getRaster().getDataBuffer()).getData();
         jfx.image.getPixelWriter().setPixels(0, 0, awt.width, awt.height,
@@ -496,7 +979,7 @@ public class Benchmarks {
     @Benchmark
     public void setArgbPreAsArgb(SourceAwtImage awt, TempArgbPreImage tmp, TargetJfxImage jfx) {
         BufferedImage awtImage = awt.frames.get(awt.index);
-        clearRect(tmp.graphics, awt.width, awt.height);
+        clearRect(tmp.graphics, awt);
         tmp.graphics.drawImage(awtImage, 0, 0, null);
         int[] data = ((DataBufferInt) tmp.image.getRaster().getDataBuffer()).getData();
         jfx.image.getPixelWriter().setPixels(0, 0, awt.width, awt.height,
@@ -518,7 +1001,7 @@ public class Benchmarks {
     @Benchmark
     public void setArgbPreAsArgbPre(SourceAwtImage awt, TempArgbPreImage tmp, TargetJfxImage jfx) {
         BufferedImage awtImage = awt.frames.get(awt.index);
-        clearRect(tmp.graphics, awt.width, awt.height);
+        clearRect(tmp.graphics, awt);
         tmp.graphics.drawImage(awtImage, 0, 0, null);
         int[] data = ((DataBufferInt) tmp.image.getRaster().getDataBuffer()).getData();
         jfx.image.getPixelWriter().setPixels(0, 0, awt.width, awt.height,
@@ -566,20 +1049,92 @@ public class Benchmarks {
         awt.nextFrame();
     }
 
+    /**
+     * Gets the pixels of the source AWT image into an intermediate array and
+     * premultiplies them in place; then writes the array to the JavaFX image
+     * using a {@code PixelWriter}. This method copies pixels in the INT_ARGB
+     * format as INT_ARGB_PRE pixels (correct).
+     *
+     * @param awt the source AWT image
+     * @param tmp the intermediate array in INT_ARGB_PRE pixel format
+     * @param jfx the target JavaFX image
+     */
+    @Benchmark
+    public void setPremultipliedAsArgbPre(SourceAwtImage awt, TempArray tmp, TargetJfxImage jfx) {
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        awtImage.getRGB(0, 0, awt.width, awt.height, tmp.array, 0, awt.width);
+        AlphaConverter.premultiply(tmp.array, 0, tmp.array, 0, tmp.array.length);
+        jfx.image.getPixelWriter().setPixels(0, 0, awt.width, awt.height,
+                PixelFormat.getIntArgbPreInstance(), tmp.array, 0, awt.width);
+        saveImage("setPremultipliedAsArgbPre-" + awt.index, jfx.image);
+        awt.nextFrame();
+    }
+
+    /**
+     * Gets only the pixels that changed since the previous frame of the source
+     * AWT image into an intermediate array; then writes the array to the same
+     * region of the JavaFX image using a {@code PixelWriter}. This method
+     * copies pixels in the INT_ARGB format as INT_ARGB pixels (correct).
+     *
+     * @param awt the source AWT image
+     * @param dirty the bounds of the changed pixels in each frame
+     * @param tmp the intermediate array in INT_ARGB pixel format
+     * @param jfx the target JavaFX image
+     * @param counter the number of bytes copied
+     */
+    @Benchmark
+    public void setChangesAsArgb(SourceAwtImage awt, FrameChanges dirty, TempArray tmp, TargetJfxImage jfx,
+            CopyCounter counter) {
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        Rectangle r = dirty.bounds.get(awt.index);
+        if (!r.isEmpty()) {
+            awtImage.getRGB(r.x, r.y, r.width, r.height, tmp.array, 0, r.width);
+            jfx.image.getPixelWriter().setPixels(r.x, r.y, r.width, r.height,
+                    PixelFormat.getIntArgbInstance(), tmp.array, 0, r.width);
+            counter.bytes += r.width * r.height * Integer.BYTES;
+        }
+        saveImage("setChangesAsArgb-" + awt.index, jfx.image);
+        awt.nextFrame();
+    }
+
+    /**
+     * Looks up the palette indices of the source AWT image into an
+     * intermediate array; then writes the array to the JavaFX image using a
+     * {@code PixelWriter}. This method copies indexed pixels through a
+     * premultiplied lookup table as INT_ARGB_PRE pixels (correct).
+     *
+     * @param awt the source AWT image with an indexed color model
+     * @param tmp the intermediate array in INT_ARGB_PRE pixel format
+     * @param jfx the target JavaFX image
+     */
+    @Benchmark
+    public void setIndexedAsArgbPre(SourceAwtImage awt, TempArray tmp, TargetJfxImage jfx) {
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        int[] palette = IndexedPixels.getPalette((IndexColorModel) awtImage.getColorModel(), null);
+        IndexedPixels.expand(awtImage, palette, tmp.array, 0, awt.width);
+        jfx.image.getPixelWriter().setPixels(0, 0, awt.width, awt.height,
+                PixelFormat.getIntArgbPreInstance(), tmp.array, 0, awt.width);
+        saveImage("setIndexedAsArgbPre-" + awt.index, jfx.image);
+        awt.nextFrame();
+    }
+
     /**
      * Converts the AWT image into a JavaFX image using the public JavaFX
      * utility method {@link SwingFXUtils#toFXImage}. This method creates a
      * JavaFX image with a pixel format of either INT_ARGB or INT_ARGB_PRE,
-     * depending on the source AWT image (correct).
+     * depending on the source AWT image, and converts indexed source images
+     * through a premultiplied lookup table of their palette (correct).
      *
      * @param awt the source AWT image
      * @param jfx the target JavaFX image
+     * @param counter the megapixels converted
      * @param blackhole used to consume the output of the utility method
      */
     @Benchmark
-    public void toFXImage(SourceAwtImage awt, TargetJfxImage jfx, Blackhole blackhole) {
+    public void toFXImage(SourceAwtImage awt, TargetJfxImage jfx, PixelCounter counter, Blackhole blackhole) {
         BufferedImage awtImage = awt.frames.get(awt.index);
         blackhole.consume(SwingFXUtils.toFXImage(awtImage, jfx.image));
+        counter.count();
         saveImage("toFXImage-" + awt.index, jfx.image);
         awt.nextFrame();
     }
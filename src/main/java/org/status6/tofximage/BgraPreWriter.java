@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes AWT images into a byte buffer as BYTE_BGRA_PRE pixels in a single
+ * pass, such as the buffer of a {@code PixelBuffer<ByteBuffer>}. Each source
+ * pixel is read once from the raster of the image, premultiplied if needed,
+ * and stored as one little-endian integer through a {@code VarHandle} view of
+ * the buffer, so the byte order of the buffer itself does not matter. Images
+ * of type {@code TYPE_INT_ARGB}, {@code TYPE_INT_ARGB_PRE},
+ * {@code TYPE_INT_RGB}, {@code TYPE_BYTE_INDEXED} and
+ * {@code TYPE_BYTE_BINARY} are read directly from their rasters, including
+ * subimages; other images are read one row at a time with {@code getRGB}. A
+ * writer reuses its palette table and row between images and is not
+ * thread-safe.
+ *
+ * @author John Neffenger
+ */
+public final class BgraPreWriter {
+
+    private static final VarHandle INT_LE = MethodHandles.byteBufferViewVarHandle(
+            int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final int OPAQUE = 0xff000000;
+
+    private int[] palette;
+    private int[] row;
+
+    /**
+     * Writes an AWT image into a byte buffer with the same width, starting at
+     * its first byte.
+     *
+     * @param image the source AWT image
+     * @param buffer the target buffer for pixels in BYTE_BGRA_PRE format
+     */
+    public void write(BufferedImage image, ByteBuffer buffer) {
+        write(image, buffer, 0, image.getWidth());
+    }
+
+    /**
+     * Writes an AWT image into a byte buffer. The position and byte order of
+     * the buffer are not changed.
+     *
+     * @param image the source AWT image
+     * @param buffer the target buffer for pixels in BYTE_BGRA_PRE format
+     * @param offset the index of the first target pixel in the buffer
+     * @param scan the distance between rows in the buffer in pixels
+     * @throws IndexOutOfBoundsException if the image does not fit in the
+     * buffer
+     */
+    public void write(BufferedImage image, ByteBuffer buffer, int offset, int scan) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long last = ((long) offset + (long) (height - 1) * scan + width) * Integer.BYTES;
+        if (offset < 0 || scan < width || last > buffer.capacity()) {
+            throw new IndexOutOfBoundsException("Image does not fit in buffer");
+        }
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+            case BufferedImage.TYPE_INT_RGB:
+                writeInts(image, buffer, offset, scan);
+                break;
+            case BufferedImage.TYPE_BYTE_INDEXED:
+            case BufferedImage.TYPE_BYTE_BINARY:
+                writeIndexed(image, buffer, offset, scan);
+                break;
+            default:
+                writeRows(image, buffer, offset, scan);
+                break;
+        }
+    }
+
+    /**
+     * Writes an image with one packed integer per pixel.
+     */
+    private static void writeInts(BufferedImage image, ByteBuffer buffer, int offset, int scan) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Raster raster = image.getRaster();
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+        DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+        int[] data = db.getData();
+        var sppsm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        int stride = sppsm.getScanlineStride();
+        int start = db.getOffset() + sppsm.getOffset(-tx, -ty);
+        int type = image.getType();
+        for (int y = 0; y < height; y++) {
+            int src = start + y * stride;
+            int dst = (offset + y * scan) * Integer.BYTES;
+            if (type == BufferedImage.TYPE_INT_ARGB) {
+                for (int x = 0; x < width; x++) {
+                    INT_LE.set(buffer, dst, AlphaConverter.premultiply(data[src + x]));
+                    dst += Integer.BYTES;
+                }
+            } else if (type == BufferedImage.TYPE_INT_ARGB_PRE) {
+                for (int x = 0; x < width; x++) {
+                    INT_LE.set(buffer, dst, data[src + x]);
+                    dst += Integer.BYTES;
+                }
+            } else {
+                for (int x = 0; x < width; x++) {
+                    INT_LE.set(buffer, dst, data[src + x] | OPAQUE);
+                    dst += Integer.BYTES;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes an image with 8-bit or packed 1, 2, or 4-bit palette indices
+     * through a premultiplied lookup table, like {@link IndexedPixels}.
+     */
+    private void writeIndexed(BufferedImage image, ByteBuffer buffer, int offset, int scan) {
+        palette = IndexedPixels.getPalette((IndexColorModel) image.getColorModel(), palette);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Raster raster = image.getRaster();
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+        DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+        byte[] data = db.getData();
+        SampleModel model = raster.getSampleModel();
+        if (model instanceof ComponentSampleModel) {
+            var csm = (ComponentSampleModel) model;
+            int stride = csm.getScanlineStride();
+            int start = db.getOffset() + csm.getOffset(-tx, -ty);
+            for (int y = 0; y < height; y++) {
+                int src = start + y * stride;
+                int dst = (offset + y * scan) * Integer.BYTES;
+                for (int x = 0; x < width; x++) {
+                    INT_LE.set(buffer, dst, palette[data[src + x] & 0xff]);
+                    dst += Integer.BYTES;
+                }
+            }
+        } else {
+            var mpsm = (MultiPixelPackedSampleModel) model;
+            int bits = mpsm.getPixelBitStride();
+            int mask = (1 << bits) - 1;
+            for (int y = 0; y < height; y++) {
+                int src = db.getOffset() + mpsm.getOffset(-tx, y - ty);
+                int shift = 8 - bits - mpsm.getBitOffset(-tx);
+                int dst = (offset + y * scan) * Integer.BYTES;
+                int value = data[src] & 0xff;
+                for (int x = 0; x < width; x++) {
+                    if (shift < 0) {
+                        value = data[++src] & 0xff;
+                        shift = 8 - bits;
+                    }
+                    INT_LE.set(buffer, dst, palette[(value >> shift) & mask]);
+                    shift -= bits;
+                    dst += Integer.BYTES;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes any other image one row at a time through {@code getRGB}.
+     */
+    private void writeRows(BufferedImage image, ByteBuffer buffer, int offset, int scan) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (row == null || row.length < width) {
+            row = new int[width];
+        }
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int dst = (offset + y * scan) * Integer.BYTES;
+            for (int x = 0; x < width; x++) {
+                INT_LE.set(buffer, dst, AlphaConverter.premultiply(row[x]));
+                dst += Integer.BYTES;
+            }
+        }
+    }
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * Measures several threads converting frames into one shared target, like
+ * camera feeds composited into a single surface. Each thread converts into
+ * its own region of the target, and the regions never overlap. The layout of
+ * the regions decides whether neighboring threads write to the same cache
+ * lines at the region boundaries:
+ * <ul>
+ * <li>{@code ROWS} splits the target into bands of rows, whose boundaries
+ * fall on cache lines because each row is a multiple of 64 bytes.</li>
+ * <li>{@code COLUMNS} splits the target into strips of columns whose
+ * boundaries are aligned to 64 bytes.</li>
+ * <li>{@code COLUMNS_SHARED} moves the strip boundaries by 32 bytes, so that
+ * neighboring threads share a cache line at the boundary on every row.</li>
+ * </ul>
+ * <p>
+ * The alignment holds for the {@code PixelBuffer} targets, whose pixels are
+ * in a direct buffer that starts on a 64-byte boundary. The pixels of a
+ * {@code WritableImage} are in an array on the heap, whose address is not
+ * under our control, so its boundaries may fall anywhere within a cache
+ * line.</p>
+ * <p>
+ * The number of operations per second is not comparable across thread
+ * counts, because each region is smaller when there are more threads.
+ * Compare the {@code megapixels} counter instead, which JMH reports as the
+ * total rate of all threads. Scale the number of threads with the {@code -t}
+ * option for the shared benchmarks and with the {@code -tg} option for the
+ * group of feeds and presenter, using commands like the following:</p>
+ * <pre>{@code
+ * for t in 1 2 4; do
+ *   $HOME/opt/jdk-14.0.1/bin/java \
+ *     -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *     -jar target/benchmarks.jar 'ContentionBenchmarks.put' -t $t -f 1 -i 1 -wi 1
+ * done
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar 'ContentionBenchmarks.composite' -tg 3,1 -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class ContentionBenchmarks {
+
+    /**
+     * The file name of the source animation.
+     */
+    private static final String FILE_NAME = "doll-dancing.gif";
+
+    /**
+     * The number of frames of the animation to load.
+     */
+    private static final int FRAME_COUNT = 16;
+
+    /**
+     * The size of a cache line in bytes.
+     */
+    private static final int LINE_SIZE = 64;
+
+    /**
+     * The number of pixels in a cache line.
+     */
+    private static final int LINE_PIXELS = LINE_SIZE / Integer.BYTES;
+
+    /**
+     * The region of the shared target written by one thread.
+     */
+    private static final class Region {
+
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+
+        private Region(int x, int y, int width, int height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * Gets the boundary between two strips of columns, aligned to a cache
+     * line and optionally moved by half a cache line.
+     */
+    private static int getColumnBoundary(int index, int count, int width, boolean shared) {
+        if (index == 0 || index == count) {
+            return index == 0 ? 0 : width;
+        }
+        int boundary = width * index / count / LINE_PIXELS * LINE_PIXELS;
+        return shared ? boundary + LINE_PIXELS / 2 : boundary;
+    }
+
+    /**
+     * Gets the region of a thread in the given layout.
+     *
+     * @param layout the name of the layout
+     * @param index the index of the thread among the threads sharing the
+     * target
+     * @param count the number of threads sharing the target
+     * @param width the width of the target
+     * @param height the height of the target
+     * @return the region of the thread
+     * @throws IllegalArgumentException if the layout is not supported
+     */
+    private static Region getRegion(String layout, int index, int count, int width, int height) {
+        switch (layout) {
+            case "ROWS":
+                int y0 = height * index / count;
+                int y1 = height * (index + 1) / count;
+                return new Region(0, y0, width, y1 - y0);
+            case "COLUMNS":
+            case "COLUMNS_SHARED":
+                boolean shared = layout.equals("COLUMNS_SHARED");
+                int x0 = getColumnBoundary(index, count, width, shared);
+                int x1 = getColumnBoundary(index + 1, count, width, shared);
+                return new Region(x0, 0, x1 - x0, height);
+            default:
+                throw new IllegalArgumentException("Unsupported layout: " + layout);
+        }
+    }
+
+    /**
+     * Allocates a direct buffer of pixels in native byte order whose first
+     * pixel starts on a cache line, so that the region boundaries are where
+     * the layouts expect them in memory.
+     *
+     * @param length the number of pixels in the buffer
+     * @return the aligned buffer
+     */
+    private static IntBuffer allocateAligned(int length) {
+        return ByteBuffer.allocateDirect(length * Integer.BYTES + LINE_SIZE - 1)
+                .alignedSlice(LINE_SIZE).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * Premultiplies the region of the source frame into the same region of
+     * the target buffer, one row at a time.
+     */
+    private static void convert(int[] src, IntBuffer dst, int scan, Region r) {
+        for (int y = r.y; y < r.y + r.height; y++) {
+            int offset = y * scan + r.x;
+            AlphaConverter.premultiply(src, offset, dst, offset, r.width);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SourceFrames {
+
+        private ArrayList<int[]> frames;
+        private int width;
+        private int height;
+
+        @Setup
+        public void doSetup() throws IOException {
+            var input = ContentionBenchmarks.class.getResourceAsStream("/" + FILE_NAME);
+            if (input == null) {
+                throw new IOException("Error loading image");
+            }
+            ImageInputStream stream = ImageIO.createImageInputStream(input);
+            ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+            reader.setInput(stream);
+            int count = Math.min(FRAME_COUNT, reader.getNumImages(true));
+            frames = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                BufferedImage frame = reader.read(i);
+                width = frame.getWidth();
+                height = frame.getHeight();
+                frames.add(frame.getRGB(0, 0, width, height, null, 0, width));
+            }
+            stream.close();
+            reader.dispose();
+        }
+
+        @TearDown
+        public void doTearDown() {
+            frames.clear();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Layout {
+
+        /**
+         * The layout of the regions written by each thread.
+         */
+        @Param({"ROWS", "COLUMNS", "COLUMNS_SHARED"})
+        public String layout;
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedJfxImage {
+
+        private WritableImage image;
+
+        @Setup
+        public void doSetup(SourceFrames src) {
+            image = new WritableImage(src.width, src.height);
+            // Makes the image writable before the threads share it, because
+            // the first write to an image is not safe to race.
+            image.getPixelWriter().setArgb(0, 0, 0);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedIntBuffer {
+
+        private IntBuffer buffer;
+        private PixelBuffer<IntBuffer> pixels;
+        private WritableImage image;
+
+        @Setup
+        public void doSetup(SourceFrames src) {
+            buffer = allocateAligned(src.width * src.height);
+            pixels = new PixelBuffer<>(src.width, src.height, buffer, PixelFormat.getIntArgbPreInstance());
+            image = new WritableImage(pixels);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Group)
+    public static class GroupIntBuffer {
+
+        private IntBuffer buffer;
+        private PixelBuffer<IntBuffer> pixels;
+        private WritableImage image;
+        private int width;
+        private int height;
+
+        @Setup
+        public void doSetup(SourceFrames src) {
+            width = src.width;
+            height = src.height;
+            buffer = allocateAligned(width * height);
+            pixels = new PixelBuffer<>(width, height, buffer, PixelFormat.getIntArgbPreInstance());
+            image = new WritableImage(pixels);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    /**
+     * The region of one thread among the threads of the benchmark, and the
+     * index of its next frame.
+     */
+    @State(Scope.Thread)
+    public static class ThreadRegion {
+
+        private Region region;
+        private int index;
+
+        private void nextFrame(SourceFrames src) {
+            index = index == src.frames.size() - 1 ? 0 : index + 1;
+        }
+
+        @Setup
+        public void doSetup(SourceFrames src, Layout layout, ThreadParams params) {
+            // Shared benchmarks split the target among all threads, each in a
+            // group of its own, while groups split it among the threads of
+            // their subgroup of feeds.
+            boolean grouped = params.getSubgroupCount() > 1;
+            int index = grouped ? params.getSubgroupThreadIndex() : params.getThreadIndex();
+            int count = grouped ? params.getSubgroupThreadCount() : params.getThreadCount();
+            region = getRegion(layout.layout, index, count, src.width, src.height);
+            // Staggers the frames so that the threads do not convert in step.
+            this.index = params.getThreadIndex() % src.frames.size();
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    /**
+     * Counts the megapixels converted by each thread. JMH sums the rates of
+     * all threads, so the total is comparable across thread counts.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class PixelCounter {
+
+        public double megapixels;
+
+        @Setup(Level.Iteration)
+        public void doSetup() {
+            megapixels = 0;
+        }
+
+        private void count(Region r) {
+            megapixels += r.width * r.height / 1e6;
+        }
+    }
+
+    /**
+     * Premultiplies the region of each thread into the integer buffer of one
+     * {@code PixelBuffer} shared by all threads (correct).
+     *
+     * @param src the source frames in INT_ARGB format
+     * @param jfx the shared target {@code PixelBuffer<IntBuffer>} in
+     * INT_ARGB_PRE pixel format
+     * @param tr the region of this thread
+     * @param counter the megapixels converted by this thread
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putSharedIntoInts(SourceFrames src, SharedIntBuffer jfx, ThreadRegion tr, PixelCounter counter,
+            Blackhole blackhole) {
+        Region r = tr.region;
+        convert(src.frames.get(tr.index), jfx.buffer, src.width, r);
+        counter.count(r);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(r.x, r.y, r.width, r.height));
+        tr.nextFrame(src);
+    }
+
+    /**
+     * Writes the region of each thread into one JavaFX image shared by all
+     * threads using a {@code PixelWriter}. This method copies pixels in the
+     * INT_ARGB format as INT_ARGB pixels (correct).
+     *
+     * @param src the source frames in INT_ARGB format
+     * @param jfx the shared target JavaFX image
+     * @param tr the region of this thread
+     * @param counter the megapixels converted by this thread
+     */
+    @Benchmark
+    public void setSharedAsArgb(SourceFrames src, SharedJfxImage jfx, ThreadRegion tr, PixelCounter counter) {
+        Region r = tr.region;
+        jfx.image.getPixelWriter().setPixels(r.x, r.y, r.width, r.height, PixelFormat.getIntArgbInstance(),
+                src.frames.get(tr.index), r.y * src.width + r.x, src.width);
+        counter.count(r);
+        tr.nextFrame(src);
+    }
+
+    /**
+     * Premultiplies the region of each feed thread into the integer buffer of
+     * a {@code PixelBuffer} shared by its group (correct).
+     *
+     * @param src the source frames in INT_ARGB format
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} of the group in
+     * INT_ARGB_PRE pixel format
+     * @param tr the region of this thread
+     * @param counter the megapixels converted by this thread
+     */
+    @Benchmark
+    @Group("composite")
+    @GroupThreads(2)
+    public void compositeFeed(SourceFrames src, GroupIntBuffer jfx, ThreadRegion tr, PixelCounter counter) {
+        convert(src.frames.get(tr.index), jfx.buffer, src.width, tr.region);
+        counter.count(tr.region);
+        tr.nextFrame(src);
+    }
+
+    /**
+     * Reads the pixels of the whole target shared by the group while the
+     * feeds write into it, as a rendering pipeline would when uploading the
+     * buffer after {@code PixelBuffer.updateBuffer}.
+     *
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} of the group in
+     * INT_ARGB_PRE pixel format
+     * @param blackhole used to consume the pixels read
+     */
+    @Benchmark
+    @Group("composite")
+    @GroupThreads(1)
+    public void compositePresent(GroupIntBuffer jfx, Blackhole blackhole) {
+        IntBuffer buffer = jfx.buffer;
+        int sum = 0;
+        for (int i = 0; i < buffer.limit(); i += LINE_PIXELS) {
+            sum += buffer.get(i);
+        }
+        blackhole.consume(sum);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, jfx.width, jfx.height));
+    }
+}
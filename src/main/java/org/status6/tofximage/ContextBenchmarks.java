@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the allocations of {@link SwingFXUtils#toFXImage} with those of the
+ * same conversion using a {@link ConversionContext} that pools its
+ * intermediate objects. Run these benchmarks with the JMH garbage collection
+ * profiler to see the bytes allocated per operation:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar ContextBenchmarks -prof gc -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class ContextBenchmarks {
+
+    /**
+     * The file name of the image used to create the source AWT image.
+     */
+    private static final String FILE_NAME = "doll-dancing.gif";
+
+    @State(Scope.Thread)
+    public static class SourceAwtImage {
+
+        /**
+         * The type of the source AWT image. The GIF frames are of type
+         * {@code TYPE_BYTE_BINARY}; the other types are drawn from the first
+         * frame.
+         */
+        @Param({"BYTE_BINARY", "3BYTE_BGR", "INT_ARGB"})
+        public String type;
+
+        private BufferedImage image;
+        private int width;
+        private int height;
+
+        @Setup
+        public void doSetup() throws IOException {
+            var input = ContextBenchmarks.class.getResource("/" + FILE_NAME);
+            if (input == null) {
+                throw new IOException("Error loading image");
+            }
+            BufferedImage frame = ImageIO.read(input);
+            width = frame.getWidth();
+            height = frame.getHeight();
+            switch (type) {
+                case "BYTE_BINARY":
+                    image = frame;
+                    return;
+                case "3BYTE_BGR":
+                    image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+                    break;
+                case "INT_ARGB":
+                    image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported image type: " + type);
+            }
+            Graphics2D graphics = image.createGraphics();
+            graphics.drawImage(frame, 0, 0, null);
+            graphics.dispose();
+        }
+
+        @TearDown
+        public void doTearDown() {
+            image.flush();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetJfxImage {
+
+        /**
+         * The number of pixels by which the target JavaFX image is larger than
+         * the source in each dimension. A margin makes the conversion clear
+         * the pixels outside of the source image.
+         */
+        @Param({"0", "16"})
+        public int margin;
+
+        private WritableImage image;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            image = new WritableImage(awt.width + margin, awt.height + margin);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Context {
+
+        private ConversionContext context;
+
+        @Setup
+        public void doSetup() {
+            context = new ConversionContext();
+        }
+
+        @TearDown
+        public void doTearDown() {
+            context.clear();
+        }
+    }
+
+    /**
+     * Converts the AWT image into a JavaFX image using the public JavaFX
+     * utility method {@link SwingFXUtils#toFXImage} (correct).
+     *
+     * @param awt the source AWT image
+     * @param jfx the target JavaFX image
+     * @param blackhole used to consume the output of the utility method
+     */
+    @Benchmark
+    public void toFXImage(SourceAwtImage awt, TargetJfxImage jfx, Blackhole blackhole) {
+        blackhole.consume(SwingFXUtils.toFXImage(awt.image, jfx.image));
+    }
+
+    /**
+     * Converts the AWT image into a JavaFX image using a conversion context
+     * that reuses its intermediate objects from one call to the next
+     * (correct).
+     *
+     * @param awt the source AWT image
+     * @param ctx the conversion context
+     * @param jfx the target JavaFX image
+     * @param blackhole used to consume the output of the conversion
+     */
+    @Benchmark
+    public void toFXImageContext(SourceAwtImage awt, Context ctx, TargetJfxImage jfx, Blackhole blackhole) {
+        blackhole.consume(ctx.context.toFXImage(awt.image, jfx.image));
+    }
+}
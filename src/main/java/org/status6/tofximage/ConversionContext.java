@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.nio.IntBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Converts AWT images to JavaFX images like
+ * {@link SwingFXUtils#toFXImage SwingFXUtils.toFXImage}, but keeps the
+ * intermediate objects it needs between calls. The intermediate AWT images
+ * and their graphics contexts are pooled by size and type, with the least
+ * recently used image evicted once the pool is full. After the first frame of
+ * a given size, converting further frames allocates almost nothing.
+ * <p>
+ * A context is not thread-safe. Use one context per converting thread.</p>
+ *
+ * @author John Neffenger
+ */
+public class ConversionContext {
+
+    /**
+     * The default maximum number of pooled intermediate AWT images.
+     */
+    public static final int DEFAULT_CAPACITY = 4;
+
+    /**
+     * The size and type of a pooled intermediate AWT image.
+     */
+    private static final class Key {
+
+        private int width;
+        private int height;
+        private int type;
+
+        Key(int width, int height, int type) {
+            set(width, height, type);
+        }
+
+        private void set(int width, int height, int type) {
+            this.width = width;
+            this.height = height;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return width == other.width && height == other.height && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return (width * 31 + height) * 31 + type;
+        }
+    }
+
+    /**
+     * A pooled intermediate AWT image with its graphics context.
+     */
+    private static final class Intermediate {
+
+        private final BufferedImage image;
+        private final Graphics2D graphics;
+
+        Intermediate(int width, int height, int type) {
+            image = new BufferedImage(width, height, type);
+            graphics = image.createGraphics();
+            // Copies the source pixels without blending so that the image
+            // need not be cleared between frames.
+            graphics.setComposite(AlphaComposite.Src);
+        }
+
+        private void dispose() {
+            graphics.dispose();
+            image.flush();
+        }
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Intermediate> pool;
+    private final Key probe = new Key(0, 0, 0);
+
+    private int[] empty = new int[0];
+    private int[] palette;
+    private int[] pixels = new int[0];
+
+    /**
+     * Creates a context with the default capacity.
+     */
+    public ConversionContext() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a context that pools at most the given number of intermediate
+     * AWT images.
+     *
+     * @param capacity the maximum number of pooled intermediate images
+     * @throws IllegalArgumentException if the capacity is less than one
+     */
+    public ConversionContext(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        pool = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Intermediate> eldest) {
+                if (size() > ConversionContext.this.capacity) {
+                    eldest.getValue().dispose();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the number of intermediate AWT images in the pool.
+     *
+     * @return the number of pooled images
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    /**
+     * Disposes of all pooled intermediate AWT images and releases the arrays
+     * held by this context.
+     */
+    public void clear() {
+        pool.values().forEach(Intermediate::dispose);
+        pool.clear();
+        empty = new int[0];
+        palette = null;
+        pixels = new int[0];
+    }
+
+    /**
+     * Gets a pooled intermediate AWT image of the given size and type,
+     * creating it if necessary.
+     */
+    private Intermediate getIntermediate(int width, int height, int type) {
+        probe.set(width, height, type);
+        Intermediate tmp = pool.get(probe);
+        if (tmp == null) {
+            tmp = new Intermediate(width, height, type);
+            pool.put(new Key(width, height, type), tmp);
+        }
+        return tmp;
+    }
+
+    /**
+     * Prepares the optional JavaFX image to receive pixels of the given size,
+     * clearing its margins with a pooled row of transparent pixels, or creates
+     * a new image if it is null or too small.
+     */
+    private WritableImage prepare(WritableImage wimg, int bw, int bh) {
+        if (wimg != null) {
+            int iw = (int) wimg.getWidth();
+            int ih = (int) wimg.getHeight();
+            if (iw < bw || ih < bh) {
+                wimg = null;
+            } else if (bw < iw || bh < ih) {
+                if (empty.length < iw) {
+                    empty = new int[iw];
+                }
+                PixelWriter pw = wimg.getPixelWriter();
+                PixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
+                if (bw < iw) {
+                    pw.setPixels(bw, 0, iw - bw, bh, pf, empty, 0, 0);
+                }
+                if (bh < ih) {
+                    pw.setPixels(0, bh, iw, ih - bh, pf, empty, 0, 0);
+                }
+            }
+        }
+        return wimg == null ? new WritableImage(bw, bh) : wimg;
+    }
+
+    /**
+     * Copies the pixels of an AWT image into a JavaFX image, creating a new
+     * JavaFX image if needed. This method has the same behavior as
+     * {@link SwingFXUtils#toFXImage SwingFXUtils.toFXImage}, except that the
+     * intermediate objects it uses are taken from this context.
+     *
+     * @param bimg the AWT image to be converted
+     * @param wimg an optional JavaFX image to store the pixels, or
+     * {@code null}
+     * @return the JavaFX image containing a copy of the pixels
+     */
+    public WritableImage toFXImage(BufferedImage bimg, WritableImage wimg) {
+        int bw = bimg.getWidth();
+        int bh = bimg.getHeight();
+        wimg = prepare(wimg, bw, bh);
+        PixelWriter pw = wimg.getPixelWriter();
+        switch (bimg.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                break;
+            case BufferedImage.TYPE_BYTE_INDEXED:
+            case BufferedImage.TYPE_BYTE_BINARY:
+                palette = IndexedPixels.getPalette((IndexColorModel) bimg.getColorModel(), palette);
+                if (pixels.length < bw * bh) {
+                    pixels = new int[bw * bh];
+                }
+                IndexedPixels.expand(bimg, palette, pixels, 0, bw);
+                pw.setPixels(0, 0, bw, bh, PixelFormat.getIntArgbPreInstance(), pixels, 0, bw);
+                return wimg;
+            default:
+                Intermediate tmp = getIntermediate(bw, bh, BufferedImage.TYPE_INT_ARGB_PRE);
+                tmp.graphics.drawImage(bimg, 0, 0, null);
+                bimg = tmp.image;
+                break;
+        }
+        Raster raster = bimg.getRaster();
+        DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+        int offset = db.getOffset();
+        int scan = 0;
+        SampleModel sm = raster.getSampleModel();
+        if (sm instanceof SinglePixelPackedSampleModel) {
+            var sppsm = (SinglePixelPackedSampleModel) sm;
+            // Subimages share the data of their parent image.
+            offset += sppsm.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+            scan = sppsm.getScanlineStride();
+        }
+        PixelFormat<IntBuffer> pf = bimg.isAlphaPremultiplied()
+                ? PixelFormat.getIntArgbPreInstance()
+                : PixelFormat.getIntArgbInstance();
+        pw.setPixels(0, 0, bw, bh, pf, db.getData(), offset, scan);
+        return wimg;
+    }
+}
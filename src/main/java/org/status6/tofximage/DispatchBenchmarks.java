@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares conversions through a calibrated {@link StrategyDispatcher} with
+ * fixed conversion methods, on generated frames of different alpha content.
+ * The dispatcher is calibrated during setup, and the strategies it chose are
+ * printed at the end of each trial. Run a quick test of only these benchmarks
+ * with a command like the following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar DispatchBenchmarks -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class DispatchBenchmarks {
+
+    @State(Scope.Thread)
+    public static class SourceAwtImage {
+
+        @Param({"OPAQUE", "TRANSLUCENT"})
+        public String content;
+
+        @Param({"1920x1080"})
+        public String size;
+
+        private BufferedImage image;
+        private int width;
+        private int height;
+
+        @Setup
+        public void doSetup() {
+            String[] values = size.split("x");
+            width = Integer.parseInt(values[0]);
+            height = Integer.parseInt(values[1]);
+            image = SyntheticFrames.create(width, height, SyntheticFrames.Content.valueOf(content), 0);
+        }
+
+        @TearDown
+        public void doTearDown() {
+            image.flush();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Dispatcher {
+
+        private StrategyDispatcher dispatcher;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) throws IOException {
+            dispatcher = new StrategyDispatcher(null);
+            dispatcher.calibrate(awt.image, StrategyDispatcher.Target.IMAGE);
+            dispatcher.calibrate(awt.image, StrategyDispatcher.Target.INT_BUFFER);
+        }
+
+        @TearDown
+        public void doTearDown(SourceAwtImage awt) {
+            System.out.println();
+            for (var target : StrategyDispatcher.Target.values()) {
+                var strategy = dispatcher.getChoice(awt.image, target);
+                if (strategy != null) {
+                    System.out.println(StrategyDispatcher.getKey(awt.image, target) + " = " + strategy);
+                }
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetJfxImage {
+
+        private WritableImage image;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            image = new WritableImage(awt.width, awt.height);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetIntBuffer {
+
+        private IntBuffer buffer;
+        private PixelBuffer<IntBuffer> pixels;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            buffer = IntBuffer.allocate(awt.width * awt.height);
+            pixels = new PixelBuffer<>(awt.width, awt.height, buffer, PixelFormat.getIntArgbPreInstance());
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TempRow {
+
+        private int[] row;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            row = new int[awt.width];
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    /**
+     * Calls the {@link SwingFXUtils#toFXImage} method. This method copies
+     * pixels in the INT_ARGB format as INT_ARGB pixels (correct).
+     *
+     * @param awt the source AWT image
+     * @param jfx the target JavaFX image
+     */
+    @Benchmark
+    public void toFXImage(SourceAwtImage awt, TargetJfxImage jfx) {
+        SwingFXUtils.toFXImage(awt.image, jfx.image);
+    }
+
+    /**
+     * Converts the image with the strategy chosen by the dispatcher for
+     * JavaFX images (correct).
+     *
+     * @param awt the source AWT image
+     * @param dsp the calibrated dispatcher
+     * @param jfx the target JavaFX image
+     */
+    @Benchmark
+    public void dispatchToFXImage(SourceAwtImage awt, Dispatcher dsp, TargetJfxImage jfx) {
+        dsp.dispatcher.toFXImage(awt.image, jfx.image);
+    }
+
+    /**
+     * Gets the pixels row by row and premultiplies them into the integer
+     * buffer of a {@code PixelBuffer}. This method copies pixels in the
+     * INT_ARGB format into an integer buffer as INT_ARGB_PRE pixels
+     * (correct).
+     *
+     * @param awt the source AWT image
+     * @param tmp the intermediate row in INT_ARGB pixel format
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putPremultipliedIntoInts(SourceAwtImage awt, TempRow tmp, TargetIntBuffer jfx, Blackhole blackhole) {
+        for (int y = 0; y < awt.height; y++) {
+            awt.image.getRGB(0, y, awt.width, 1, tmp.row, 0, awt.width);
+            AlphaConverter.premultiply(tmp.row, 0, jfx.buffer, y * awt.width, awt.width);
+        }
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+    }
+
+    /**
+     * Puts the pixels into the integer buffer of a {@code PixelBuffer} with
+     * the strategy chosen by the dispatcher for integer buffers (correct).
+     *
+     * @param awt the source AWT image
+     * @param dsp the calibrated dispatcher
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void dispatchIntoInts(SourceAwtImage awt, Dispatcher dsp, TargetIntBuffer jfx, Blackhole blackhole) {
+        dsp.dispatcher.put(awt.image, jfx.pixels);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.WritableImage;
+import jdk.jfr.Recording;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of the Flight Recorder events emitted by the conversion
+ * methods of {@link SwingFXUtils}, comparing a run without any recording, a
+ * recording in which the events keep their default disabled setting, and a
+ * recording in which they are enabled. Small images show the fixed cost of
+ * an event on each call; large images show how little it adds to a full
+ * frame. Run a quick test of only these benchmarks with a command like the
+ * following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar EventBenchmarks -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class EventBenchmarks {
+
+    /**
+     * The name of the event for each conversion to a JavaFX image.
+     */
+    private static final String TO_FX_IMAGE = "javafx.embed.swing.ToFXImage";
+
+    /**
+     * The name of the event for each conversion from a JavaFX image.
+     */
+    private static final String FROM_FX_IMAGE = "javafx.embed.swing.FromFXImage";
+
+    /**
+     * The maximum size of the recording on disk, so that the enabled events
+     * of a long run do not fill the file system.
+     */
+    private static final long MAX_SIZE = 64L * 1024 * 1024;
+
+    @State(Scope.Thread)
+    public static class Recorder {
+
+        /**
+         * The state of the recording: {@code OFF} for no recording,
+         * {@code DISABLED} for a recording with the conversion events left
+         * disabled, or {@code ENABLED} for a recording of every conversion.
+         */
+        @Param({"OFF", "DISABLED", "ENABLED"})
+        public String events;
+
+        private Recording recording;
+
+        @Setup
+        public void doSetup() {
+            if (!events.equals("OFF")) {
+                recording = new Recording();
+                recording.setMaxSize(MAX_SIZE);
+                if (events.equals("ENABLED")) {
+                    recording.enable(TO_FX_IMAGE);
+                    recording.enable(FROM_FX_IMAGE);
+                }
+                recording.start();
+            }
+        }
+
+        @TearDown
+        public void doTearDown() {
+            if (recording != null) {
+                recording.close();
+                recording = null;
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SourceAwtImage {
+
+        @Param({"32x32", "1920x1080"})
+        public String size;
+
+        private BufferedImage image;
+        private int width;
+        private int height;
+
+        @Setup
+        public void doSetup() {
+            String[] values = size.split("x");
+            width = Integer.parseInt(values[0]);
+            height = Integer.parseInt(values[1]);
+            image = SyntheticFrames.create(width, height, SyntheticFrames.Content.TRANSLUCENT, 0);
+        }
+
+        @TearDown
+        public void doTearDown() {
+            image.flush();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetJfxImage {
+
+        private WritableImage image;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            image = new WritableImage(awt.width, awt.height);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetAwtImage {
+
+        private WritableImage source;
+        private BufferedImage image;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            source = SwingFXUtils.toFXImage(awt.image, null);
+            image = new BufferedImage(awt.width, awt.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+
+        @TearDown
+        public void doTearDown() {
+            image.flush();
+        }
+    }
+
+    /**
+     * Converts the AWT image into a preallocated JavaFX image, emitting one
+     * {@code ToFXImage} event when enabled.
+     *
+     * @param awt the source AWT image
+     * @param jfr the recording
+     * @param jfx the target JavaFX image
+     * @param blackhole used to consume the returned image
+     */
+    @Benchmark
+    public void toFXImage(SourceAwtImage awt, Recorder jfr, TargetJfxImage jfx, Blackhole blackhole) {
+        blackhole.consume(SwingFXUtils.toFXImage(awt.image, jfx.image));
+    }
+
+    /**
+     * Converts a JavaFX image into a preallocated AWT image, emitting one
+     * {@code FromFXImage} event when enabled.
+     *
+     * @param jfr the recording
+     * @param awt the source JavaFX image and target AWT image
+     * @param blackhole used to consume the returned image
+     */
+    @Benchmark
+    public void fromFXImage(Recorder jfr, TargetAwtImage awt, Blackhole blackhole) {
+        blackhole.consume(SwingFXUtils.fromFXImage(awt.source, awt.image));
+    }
+}
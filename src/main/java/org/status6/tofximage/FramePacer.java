@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces frames at a fixed rate, like the display refresh of a player, and
+ * keeps statistics on how well each frame meets its deadline. A frame starts
+ * at its scheduled tick and must end before the next one. A frame that ends
+ * late is a deadline miss, and the ticks that pass while it runs are dropped
+ * frames. Misses during which the garbage collector ran are counted
+ * separately, so that pauses for garbage collection can be told apart from
+ * slow conversions.
+ * <p>
+ * Jitter is the standard deviation of the start of each frame from its
+ * scheduled tick. A pacer is not thread-safe.</p>
+ *
+ * @author John Neffenger
+ */
+public class FramePacer {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long period;
+    private final GarbageCollectorMXBean[] collectors;
+
+    private long origin;
+    private long tick;
+    private long started;
+    private long collections;
+
+    private long frames;
+    private long misses;
+    private long gcMisses;
+    private long dropped;
+    private long maxLateness;
+    private double sumLag;
+    private double sumLagSquared;
+
+    /**
+     * Creates a pacer with the given frame rate.
+     *
+     * @param rate the frame rate in frames per second
+     * @throws IllegalArgumentException if the rate is less than one
+     */
+    public FramePacer(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("Rate must be positive: " + rate);
+        }
+        period = NANOS_PER_SECOND / rate;
+        collectors = ManagementFactory.getGarbageCollectorMXBeans().toArray(new GarbageCollectorMXBean[0]);
+        reset();
+    }
+
+    /**
+     * Gets the total number of garbage collections so far.
+     */
+    private long getCollections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Clears the statistics and schedules the first frame one period from
+     * now.
+     */
+    public final void reset() {
+        origin = System.nanoTime();
+        tick = 0;
+        frames = 0;
+        misses = 0;
+        gcMisses = 0;
+        dropped = 0;
+        maxLateness = 0;
+        sumLag = 0;
+        sumLagSquared = 0;
+    }
+
+    /**
+     * Waits for the tick of the next frame. Ticks that have already passed
+     * are skipped and counted as dropped frames.
+     */
+    public void beginFrame() {
+        tick++;
+        long now = System.nanoTime();
+        long late = now - (origin + tick * period);
+        if (late > period) {
+            long skipped = late / period;
+            dropped += skipped;
+            tick += skipped;
+        }
+        long scheduled = origin + tick * period;
+        while ((now = System.nanoTime()) < scheduled) {
+            LockSupport.parkNanos(scheduled - now);
+        }
+        started = now;
+        collections = getCollections();
+        double lag = started - scheduled;
+        sumLag += lag;
+        sumLagSquared += lag * lag;
+    }
+
+    /**
+     * Ends the current frame and checks it against its deadline, the tick of
+     * the next frame.
+     */
+    public void endFrame() {
+        long now = System.nanoTime();
+        long lateness = now - (origin + (tick + 1) * period);
+        frames++;
+        if (lateness > 0) {
+            misses++;
+            if (getCollections() != collections) {
+                gcMisses++;
+            }
+            maxLateness = Math.max(maxLateness, lateness);
+        }
+    }
+
+    /**
+     * Gets the number of frames ended since the last reset.
+     *
+     * @return the number of frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Gets the number of frames that ended after their deadline.
+     *
+     * @return the number of deadline misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of deadline misses during which the garbage collector
+     * ran.
+     *
+     * @return the number of misses with a garbage collection
+     */
+    public long getGcMisses() {
+        return gcMisses;
+    }
+
+    /**
+     * Gets the number of ticks skipped because a frame was still running.
+     *
+     * @return the number of dropped frames
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Gets the longest time by which a frame missed its deadline.
+     *
+     * @return the maximum lateness in nanoseconds
+     */
+    public long getMaxLateness() {
+        return maxLateness;
+    }
+
+    /**
+     * Gets the standard deviation of the start of each frame from its
+     * scheduled tick.
+     *
+     * @return the jitter in nanoseconds
+     */
+    public double getJitter() {
+        if (frames == 0) {
+            return 0;
+        }
+        double mean = sumLag / frames;
+        return Math.sqrt(Math.max(0, sumLagSquared / frames - mean * mean));
+    }
+}
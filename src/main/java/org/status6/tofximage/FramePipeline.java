@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+
+/**
+ * Streams the frames of an animation through three stages: decoding, on its
+ * own thread; conversion to 32-bit pixels, on a second thread; and
+ * presentation, on the thread that calls {@link #take} and {@link #release}.
+ * The stages are joined by bounded rings that pass a fixed set of frames,
+ * allocated up front, from one stage to the next. The number of frames sets
+ * how far decoding can run ahead of presentation, and so trades memory and
+ * latency for smoother throughput.
+ * <p>
+ * The animation is decoded one frame at a time and repeats from the first
+ * frame after the last, so neither startup time nor memory grows with the
+ * length of the animation. Each frame keeps its decoded image and reuses it
+ * as the destination of the next decoding, so the decoding stage does not
+ * allocate a new image for every frame.</p>
+ *
+ * @author John Neffenger
+ */
+public class FramePipeline implements AutoCloseable {
+
+    /**
+     * Converts a decoded AWT image into 32-bit pixels.
+     */
+    @FunctionalInterface
+    public interface Conversion {
+
+        /**
+         * Converts the image into the array of pixels.
+         *
+         * @param image the decoded AWT image
+         * @param pixels the array to receive the pixels, with a scanline
+         * stride equal to the width of the image
+         */
+        void convert(BufferedImage image, int[] pixels);
+    }
+
+    /**
+     * A preallocated frame passed from one stage of the pipeline to the next.
+     */
+    public static final class Frame {
+
+        private final int[] pixels;
+        private BufferedImage image;
+        private int index;
+        private long startTime;
+
+        private Frame(int size) {
+            pixels = new int[size];
+        }
+
+        /**
+         * Gets the converted pixels of this frame.
+         *
+         * @return the array of pixels
+         */
+        public int[] getPixels() {
+            return pixels;
+        }
+
+        /**
+         * Gets the index of this frame in the animation.
+         *
+         * @return the frame index
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Gets the time at which decoding of this frame started.
+         *
+         * @return the start time in nanoseconds, as returned by
+         * {@link System#nanoTime}
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+    }
+
+    private final ImageReader reader;
+    private final Conversion conversion;
+    private final int width;
+    private final int height;
+    private final int count;
+
+    private final FrameRing<Frame> free;
+    private final FrameRing<Frame> decoded;
+    private final FrameRing<Frame> converted;
+
+    private final Thread decoder;
+    private final Thread converter;
+
+    private volatile Throwable failure;
+
+    /**
+     * Creates a pipeline that decodes the frames of the image reader and
+     * converts them with the given conversion. The pipeline is not started
+     * until {@link #start} is called.
+     *
+     * @param reader the image reader with its input already set
+     * @param conversion the conversion of each decoded frame
+     * @param depth the number of frames in the pipeline
+     * @throws IOException if an error occurs reading the size of the first
+     * frame or the number of frames
+     * @throws IllegalArgumentException if the depth is less than one
+     */
+    public FramePipeline(ImageReader reader, Conversion conversion, int depth) throws IOException {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Depth must be positive: " + depth);
+        }
+        this.reader = reader;
+        this.conversion = conversion;
+        count = reader.getNumImages(true);
+        if (count <= 0) {
+            throw new IOException("Error reading image: no frames");
+        }
+        width = reader.getWidth(0);
+        height = reader.getHeight(0);
+        free = new FrameRing<>(depth);
+        decoded = new FrameRing<>(depth);
+        converted = new FrameRing<>(depth);
+        for (int i = 0; i < depth; i++) {
+            free.offer(new Frame(width * height));
+        }
+        decoder = new Thread(this::decode, "FramePipeline Decoder");
+        decoder.setDaemon(true);
+        converter = new Thread(this::convert, "FramePipeline Converter");
+        converter.setDaemon(true);
+    }
+
+    /**
+     * Decodes each frame into the next free slot of the pipeline.
+     */
+    private void decode() {
+        try {
+            ImageReadParam param = reader.getDefaultReadParam();
+            int index = 0;
+            while (true) {
+                Frame frame = free.take();
+                frame.startTime = System.nanoTime();
+                if (reader.getWidth(index) != width || reader.getHeight(index) != height) {
+                    throw new IOException("Error reading image: frame " + index + " has a different size");
+                }
+                // Decodes into the image last decoded into this frame, unless
+                // the palette changed, rather than allocating a new image.
+                BufferedImage image = frame.image;
+                if (image != null && !reader.getRawImageType(index).getColorModel().equals(image.getColorModel())) {
+                    image = null;
+                }
+                param.setDestination(image);
+                frame.image = reader.read(index, param);
+                frame.index = index;
+                decoded.put(frame);
+                index = index == count - 1 ? 0 : index + 1;
+            }
+        } catch (InterruptedException e) {
+            // Closed by the presentation thread
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Converts each decoded frame into its array of pixels.
+     */
+    private void convert() {
+        try {
+            while (true) {
+                Frame frame = decoded.take();
+                conversion.convert(frame.image, frame.pixels);
+                converted.put(frame);
+            }
+        } catch (InterruptedException e) {
+            // Closed by the presentation thread
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Gets the width of each frame.
+     *
+     * @return the width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of each frame.
+     *
+     * @return the height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Starts the decoding and conversion threads.
+     */
+    public void start() {
+        decoder.start();
+        converter.start();
+    }
+
+    /**
+     * Takes the next converted frame, waiting until one is ready. The frame
+     * must be given back with {@link #release} once it has been presented.
+     *
+     * @return the next converted frame
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws IllegalStateException if the decoding or conversion thread
+     * failed
+     */
+    public Frame take() throws InterruptedException {
+        int spins = 0;
+        Frame frame;
+        while ((frame = converted.poll()) == null) {
+            if (failure != null) {
+                throw new IllegalStateException("Pipeline stage failed", failure);
+            }
+            spins = FrameRing.idle(spins);
+        }
+        return frame;
+    }
+
+    /**
+     * Gives back a presented frame so that it can be decoded again.
+     *
+     * @param frame the frame returned by {@link #take}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void release(Frame frame) throws InterruptedException {
+        free.put(frame);
+    }
+
+    /**
+     * Stops the decoding and conversion threads and waits for them to end.
+     * The image reader is left open. If the calling thread is interrupted
+     * while waiting, this method returns early with its interrupt status set.
+     */
+    @Override
+    public void close() {
+        decoder.interrupt();
+        converter.interrupt();
+        try {
+            decoder.join();
+            converter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring buffer passing objects from exactly one producer thread to
+ * exactly one consumer thread. Adding and removing objects allocates nothing;
+ * a thread that finds the ring full or empty spins briefly and then parks
+ * until the other thread catches up.
+ *
+ * @param <T> the type of the objects in the ring
+ * @author John Neffenger
+ */
+final class FrameRing<T> {
+
+    private static final int SPIN_LIMIT = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    private final Object[] items;
+    private final int mask;
+
+    private volatile long head;
+    private volatile long tail;
+
+    /**
+     * Creates a ring that holds at least the given number of objects.
+     *
+     * @param capacity the minimum capacity of the ring
+     * @throws IllegalArgumentException if the capacity is less than one
+     */
+    FrameRing(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        size = size < capacity ? size << 1 : size;
+        items = new Object[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Adds an object to the ring if it is not full. Called only by the
+     * producer thread.
+     *
+     * @param item the object to add
+     * @return {@code true} if the object was added; otherwise {@code false}
+     */
+    boolean offer(T item) {
+        long t = tail;
+        if (t - head == items.length) {
+            return false;
+        }
+        items[(int) t & mask] = item;
+        tail = t + 1;
+        return true;
+    }
+
+    /**
+     * Removes the oldest object from the ring if it is not empty. Called only
+     * by the consumer thread.
+     *
+     * @return the oldest object, or {@code null} if the ring is empty
+     */
+    @SuppressWarnings("unchecked")
+    T poll() {
+        long h = head;
+        if (h == tail) {
+            return null;
+        }
+        int i = (int) h & mask;
+        T item = (T) items[i];
+        items[i] = null;
+        head = h + 1;
+        return item;
+    }
+
+    /**
+     * Adds an object to the ring, waiting while the ring is full.
+     *
+     * @param item the object to add
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void put(T item) throws InterruptedException {
+        int spins = 0;
+        while (!offer(item)) {
+            spins = idle(spins);
+        }
+    }
+
+    /**
+     * Removes the oldest object from the ring, waiting while the ring is
+     * empty.
+     *
+     * @return the oldest object
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    T take() throws InterruptedException {
+        int spins = 0;
+        T item;
+        while ((item = poll()) == null) {
+            spins = idle(spins);
+        }
+        return item;
+    }
+
+    /**
+     * Waits briefly for the other thread, spinning at first and then parking.
+     *
+     * @param spins the number of times the caller has already spun
+     * @return the new number of spins
+     * @throws InterruptedException if the thread is interrupted
+     */
+    static int idle(int spins) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (spins < SPIN_LIMIT) {
+            Thread.onSpinWait();
+            return spins + 1;
+        }
+        LockSupport.parkNanos(PARK_NANOS);
+        return spins;
+    }
+}
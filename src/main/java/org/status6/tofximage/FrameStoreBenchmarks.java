@@ -0,0 +1,484 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares keeping decoded animation frames on the Java heap with keeping them
+ * off the heap in a {@link MappedFrameStore}. The benchmarks measure the cost
+ * of each frame and the duration of a full garbage collection, while the
+ * {@link HeapProfiler} reports the heap still in use after a collection as a
+ * secondary result. The sequence benchmarks map the file and play its frames
+ * in each call, comparing a {@code PixelBuffer} backed by each mapped frame
+ * with a copy of each frame, under each prefetch policy of the store. Run a
+ * quick test of only these benchmarks with a command like the following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar FrameStoreBenchmarks -f 1 -i 1 -wi 1 \
+ *   -prof org.status6.tofximage.HeapProfiler
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class FrameStoreBenchmarks {
+
+    /**
+     * The file name of the source animation.
+     */
+    private static final String FILE_NAME = "doll-dancing.gif";
+
+    /**
+     * The size of a page of memory, which is the unit of a page fault.
+     */
+    private static final int PAGE_SIZE = 4096;
+
+    /**
+     * Opens an image reader on the source animation.
+     *
+     * @return the image reader with its input set
+     * @throws IOException if an error occurs opening the file
+     */
+    private static ImageReader openReader() throws IOException {
+        var input = FrameStoreBenchmarks.class.getResourceAsStream("/" + FILE_NAME);
+        if (input == null) {
+            throw new IOException("Error loading image");
+        }
+        ImageInputStream stream = ImageIO.createImageInputStream(input);
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        reader.setInput(stream);
+        return reader;
+    }
+
+    /**
+     * Closes the input of the image reader and disposes of the reader.
+     *
+     * @param reader the image reader
+     * @throws IOException if an error occurs closing the input
+     */
+    private static void closeReader(ImageReader reader) throws IOException {
+        ((ImageInputStream) reader.getInput()).close();
+        reader.dispose();
+    }
+
+    @State(Scope.Thread)
+    public static class FrameCount {
+
+        /**
+         * The number of frames of the animation to load. Each frame takes
+         * almost 2 MiB once decoded to 32-bit pixels.
+         */
+        @Param({"120"})
+        public int count;
+    }
+
+    @State(Scope.Thread)
+    public static class HeapFrames {
+
+        private ArrayList<BufferedImage> frames;
+        private int width;
+        private int height;
+        private int index;
+
+        private void nextFrame() {
+            index = index == frames.size() - 1 ? 0 : index + 1;
+        }
+
+        @Setup
+        public void doSetup(FrameCount frameCount) throws IOException {
+            ImageReader reader = openReader();
+            int count = Math.min(frameCount.count, reader.getNumImages(true));
+            frames = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                frames.add(reader.read(i));
+            }
+            closeReader(reader);
+            width = frames.get(0).getWidth();
+            height = frames.get(0).getHeight();
+            index = 0;
+        }
+
+        @TearDown
+        public void doTearDown() {
+            frames.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class HeapArgbPreFrames {
+
+        private ArrayList<int[]> frames;
+        private int index;
+
+        private void nextFrame() {
+            index = index == frames.size() - 1 ? 0 : index + 1;
+        }
+
+        @Setup
+        public void doSetup(HeapFrames awt) {
+            // Decodes each frame to its display format, as a player would.
+            frames = new ArrayList<>(awt.frames.size());
+            for (BufferedImage frame : awt.frames) {
+                var image = new BufferedImage(awt.width, awt.height, BufferedImage.TYPE_INT_ARGB_PRE);
+                Graphics2D graphics = image.createGraphics();
+                graphics.drawImage(frame, 0, 0, null);
+                graphics.dispose();
+                frames.add(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+            }
+            index = 0;
+        }
+
+        @TearDown
+        public void doTearDown() {
+            frames.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MappedFrames {
+
+        private Path file;
+        private MappedFrameStore store;
+        private PixelFormat<ByteBuffer> format;
+        private int count;
+        private int index;
+
+        private void nextFrame() {
+            index = index == count - 1 ? 0 : index + 1;
+        }
+
+        @Setup
+        public void doSetup(FrameCount frameCount) throws IOException {
+            file = Files.createTempFile("frames-", ".bgra");
+            ImageReader reader = openReader();
+            store = MappedFrameStore.create(reader, file, frameCount.count);
+            closeReader(reader);
+            format = PixelFormat.getByteBgraPreInstance();
+            count = store.getCount();
+            index = 0;
+        }
+
+        @TearDown
+        public void doTearDown() throws IOException {
+            store.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Maps the file of the frames again in each pass through the sequence,
+     * inside the measured method, so that the score includes the mapping and
+     * any loading done by the prefetch policy. The file stays in the page
+     * cache of the operating system between passes, so the page faults are
+     * minor faults that map pages already in memory rather than reads from
+     * the disk. The mappings of a pass are released by a full garbage
+     * collection after it, so they do not accumulate over the iteration.
+     */
+    @State(Scope.Thread)
+    public static class MappedSequence {
+
+        /**
+         * The policy for loading frames before they are played.
+         */
+        @Param({"NONE", "AHEAD", "ALL"})
+        public String prefetch;
+
+        /**
+         * The number of frames to load ahead with the {@code AHEAD} policy.
+         */
+        @Param({"4"})
+        public int distance;
+
+        private MappedFrameStore store;
+
+        private MappedFrameStore open(MappedFrames map) throws IOException {
+            store = MappedFrameStore.open(map.file, map.store.getWidth(), map.store.getHeight(),
+                    MappedFrameStore.Prefetch.valueOf(prefetch), distance);
+            return store;
+        }
+
+        @TearDown(Level.Invocation)
+        public void doTearDown() {
+            if (store != null) {
+                store.close();
+                store = null;
+            }
+            // Unmaps the buffers of this pass, which are otherwise released
+            // only when a collection happens to find them. The collection
+            // runs outside of the measured method, and each invocation plays
+            // a whole sequence of many milliseconds, so the timing overhead
+            // of an invocation-level fixture is negligible here.
+            System.gc();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TempArgbPreImage {
+
+        private BufferedImage image;
+        private Graphics2D graphics;
+        private int[] data;
+
+        @Setup
+        public void doSetup(HeapFrames awt) {
+            image = new BufferedImage(awt.width, awt.height, BufferedImage.TYPE_INT_ARGB_PRE);
+            graphics = image.createGraphics();
+            data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        @TearDown
+        public void doTearDown() {
+            graphics.dispose();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetByteBuffer {
+
+        private ByteBuffer buffer;
+        private PixelBuffer<ByteBuffer> pixels;
+        private int width;
+        private int height;
+
+        @Setup
+        public void doSetup() throws IOException {
+            ImageReader reader = openReader();
+            width = reader.getWidth(0);
+            height = reader.getHeight(0);
+            closeReader(reader);
+            buffer = ByteBuffer.allocateDirect(width * height * Integer.BYTES);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            pixels = new PixelBuffer<>(width, height, buffer, PixelFormat.getByteBgraPreInstance());
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    /**
+     * Draws the decoded frame into an intermediate AWT image; then puts its
+     * raster data into the byte buffer of a {@code PixelBuffer}, like
+     * {@link Benchmarks#putArgbPreIntoBytes} (correct).
+     *
+     * @param awt the decoded frames on the heap
+     * @param tmp the intermediate AWT image in INT_ARGB_PRE pixel format
+     * @param jfx the target {@code PixelBuffer<ByteBuffer>} in BYTE_BGRA_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putHeapFramesIntoBytes(HeapFrames awt, TempArgbPreImage tmp, TargetByteBuffer jfx, Blackhole blackhole) {
+        tmp.graphics.drawImage(awt.frames.get(awt.index), 0, 0, null);
+        jfx.buffer.asIntBuffer().put(tmp.data);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, jfx.width, jfx.height));
+        awt.nextFrame();
+    }
+
+    /**
+     * Puts a frame already in INT_ARGB_PRE format on the heap into the byte
+     * buffer of a {@code PixelBuffer} (correct).
+     *
+     * @param awt the frames on the heap in INT_ARGB_PRE pixel format
+     * @param jfx the target {@code PixelBuffer<ByteBuffer>} in BYTE_BGRA_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putArgbPreFramesIntoBytes(HeapArgbPreFrames awt, TargetByteBuffer jfx, Blackhole blackhole) {
+        jfx.buffer.asIntBuffer().put(awt.frames.get(awt.index));
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, jfx.width, jfx.height));
+        awt.nextFrame();
+    }
+
+    /**
+     * Copies a memory-mapped frame in BYTE_BGRA_PRE format into the byte
+     * buffer of a {@code PixelBuffer} (correct).
+     *
+     * @param map the memory-mapped frames
+     * @param jfx the target {@code PixelBuffer<ByteBuffer>} in BYTE_BGRA_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    @AllocationFree(allowance = 64) // The Rectangle2D of the simulated update
+    public void putMappedFramesIntoBytes(MappedFrames map, TargetByteBuffer jfx, Blackhole blackhole) {
+        ByteBuffer frame = map.store.getFrame(map.index);
+        frame.clear();
+        jfx.buffer.clear();
+        jfx.buffer.put(frame);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, jfx.width, jfx.height));
+        map.nextFrame();
+    }
+
+    /**
+     * Wraps a memory-mapped frame in a new {@code PixelBuffer} and JavaFX
+     * image without copying its pixels (correct).
+     *
+     * @param map the memory-mapped frames
+     * @param blackhole used to consume the new JavaFX image
+     */
+    @Benchmark
+    public void wrapMappedFrames(MappedFrames map, Blackhole blackhole) {
+        ByteBuffer frame = map.store.getFrame(map.index);
+        var pixels = new PixelBuffer<>(map.store.getWidth(), map.store.getHeight(), frame, map.format);
+        blackhole.consume(new WritableImage(pixels));
+        map.nextFrame();
+    }
+
+    /**
+     * Reads one byte from each page of a frame, as the renderer does on its
+     * first access to the frame, so that any page faults are taken here.
+     *
+     * @param frame the buffer of the frame
+     * @return the sum of the bytes read
+     */
+    private static int touchPages(ByteBuffer frame) {
+        int sum = 0;
+        for (int i = 0; i < frame.capacity(); i += PAGE_SIZE) {
+            sum += frame.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Maps and plays the sequence by wrapping each frame in a JavaFX image
+     * and presenting it, without copying its pixels (correct). Each frame
+     * costs the page faults of its first access, unless the prefetch policy
+     * has already taken them while opening the store or in the background.
+     * Divide the score by the number of frames for the cost of each frame.
+     *
+     * @param map the file of the frames
+     * @param seq the mapping of the sequence
+     * @param blackhole used to consume the images and pages read
+     * @throws IOException if an error occurs mapping the file
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void playMappedSequence(MappedFrames map, MappedSequence seq, Blackhole blackhole) throws IOException {
+        MappedFrameStore store = seq.open(map);
+        for (int i = 0; i < store.getCount(); i++) {
+            ByteBuffer frame = store.getFrame(i);
+            var image = new WritableImage(new PixelBuffer<>(store.getWidth(), store.getHeight(), frame, map.format));
+            blackhole.consume(touchPages(frame));
+            // Simulates ImageView.setImage on JavaFX Application Thread
+            blackhole.consume(image);
+        }
+    }
+
+    /**
+     * Maps and plays the sequence by copying each frame into the byte buffer
+     * of one {@code PixelBuffer}, like {@link #putMappedFramesIntoBytes}
+     * (correct). Divide the score by the number of frames for the cost of
+     * each frame.
+     *
+     * @param map the file of the frames
+     * @param seq the mapping of the sequence
+     * @param jfx the target {@code PixelBuffer<ByteBuffer>} in BYTE_BGRA_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     * @throws IOException if an error occurs mapping the file
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void copyMappedSequence(MappedFrames map, MappedSequence seq, TargetByteBuffer jfx, Blackhole blackhole)
+            throws IOException {
+        MappedFrameStore store = seq.open(map);
+        for (int i = 0; i < store.getCount(); i++) {
+            ByteBuffer frame = store.getFrame(i);
+            frame.clear();
+            jfx.buffer.clear();
+            jfx.buffer.put(frame);
+            // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+            blackhole.consume(new Rectangle2D(0, 0, jfx.width, jfx.height));
+        }
+    }
+
+    /**
+     * Runs a full garbage collection while the decoded frames are on the heap.
+     *
+     * @param awt the decoded frames on the heap
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void collectHeapFrames(HeapFrames awt) {
+        System.gc();
+    }
+
+    /**
+     * Runs a full garbage collection while the frames in INT_ARGB_PRE format
+     * are on the heap.
+     *
+     * @param awt the frames on the heap in INT_ARGB_PRE pixel format
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void collectArgbPreFrames(HeapArgbPreFrames awt) {
+        System.gc();
+    }
+
+    /**
+     * Runs a full garbage collection while the frames are mapped off the heap.
+     *
+     * @param map the memory-mapped frames
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void collectMappedFrames(MappedFrames map) {
+        System.gc();
+    }
+}
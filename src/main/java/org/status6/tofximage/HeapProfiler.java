@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.List;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * Reports the heap memory still in use after a full garbage collection at
+ * the end of each iteration, while the states of the benchmark are still
+ * alive. The heap in use is a level rather than a count, so the result is
+ * averaged over the iterations and forks instead of added up, and it is
+ * saved with the other results of the run. Add this profiler to a run with
+ * the option {@code -prof org.status6.tofximage.HeapProfiler}.
+ *
+ * @author John Neffenger
+ */
+public class HeapProfiler implements InternalProfiler {
+
+    @Override
+    public String getDescription() {
+        return "Heap in use after a full garbage collection";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+    }
+
+    @Override
+    public Collection<ScalarResult> afterIteration(BenchmarkParams benchmarkParams,
+            IterationParams iterationParams, IterationResult result) {
+        System.gc();
+        long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        return List.of(new ScalarResult("heap.used", used, "bytes", AggregationPolicy.AVG));
+    }
+}
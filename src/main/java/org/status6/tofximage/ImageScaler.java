@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Converts an AWT image to a smaller JavaFX image, scaling it down in the
+ * same pass that reads the source pixels. Images of type
+ * {@code TYPE_INT_ARGB}, {@code TYPE_INT_ARGB_PRE} and {@code TYPE_INT_RGB}
+ * are read directly from their rasters; other images are read one row at a
+ * time with {@code getRGB}. The pixels are premultiplied before they are
+ * filtered, so that transparent pixels do not darken their neighbors, and the
+ * results are written in INT_ARGB_PRE format either into an array, such as
+ * the buffer of a {@code PixelBuffer<IntBuffer>}, or into a JavaFX image one
+ * row at a time. A scaler reuses its rows and tables between images and is
+ * not thread-safe.
+ *
+ * @author John Neffenger
+ */
+public final class ImageScaler {
+
+    /**
+     * The filters used to compute each target pixel.
+     */
+    public enum Filter {
+        /**
+         * Averages all source pixels that fall in the area of the target
+         * pixel. Each source row is read once.
+         */
+        BOX,
+        /**
+         * Interpolates between the four source pixels nearest the center of
+         * the target pixel. Only two source rows are read for each target
+         * row, so small details can be missed when scaling down by more than
+         * a factor of two.
+         */
+        BILINEAR
+    }
+
+    private static final int OPAQUE = 0xff000000;
+
+    private final Filter filter;
+
+    private int[] row0;
+    private int[] row1;
+    private long[] sums;
+    private int[] target;
+    private int[] xs;
+    private int[] fxs;
+    private int columnSource;
+    private int columnWidth;
+
+    /**
+     * Creates a scaler with the given filter.
+     *
+     * @param filter the filter for computing each target pixel
+     */
+    public ImageScaler(Filter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Gets the filter of this scaler.
+     *
+     * @return the filter
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Scales an AWT image to the given size and writes it into a JavaFX
+     * image.
+     *
+     * @param bimg the source AWT image
+     * @param width the target width in pixels
+     * @param height the target height in pixels
+     * @param wimg an optional JavaFX image of the target size to reuse
+     * @return the optional JavaFX image if it was of the target size, or a
+     * new JavaFX image
+     * @throws IllegalArgumentException if the target size is not positive
+     */
+    public WritableImage toFXImage(BufferedImage bimg, int width, int height, WritableImage wimg) {
+        checkSize(width, height);
+        if (wimg == null || (int) wimg.getWidth() != width || (int) wimg.getHeight() != height) {
+            wimg = new WritableImage(width, height);
+        }
+        if (target == null || target.length < width) {
+            target = new int[width];
+        }
+        var pw = wimg.getPixelWriter();
+        PixelFormat<IntBuffer> pf = PixelFormat.getIntArgbPreInstance();
+        for (int y = 0; y < height; y++) {
+            scaleRow(bimg, width, height, y, target, 0);
+            pw.setPixels(0, y, width, 1, pf, target, 0, width);
+        }
+        return wimg;
+    }
+
+    /**
+     * Scales an AWT image to the given size and writes it into an integer
+     * buffer, such as the buffer of a {@code PixelBuffer} in INT_ARGB_PRE
+     * format. The position of the buffer is not changed.
+     *
+     * @param bimg the source AWT image
+     * @param width the target width in pixels
+     * @param height the target height in pixels
+     * @param buffer the target buffer, with an accessible array
+     * @throws IllegalArgumentException if the target size is not positive
+     */
+    public void scale(BufferedImage bimg, int width, int height, IntBuffer buffer) {
+        scale(bimg, width, height, buffer.array(), buffer.arrayOffset(), width);
+    }
+
+    /**
+     * Scales an AWT image to the given size and writes it into an array of
+     * INT_ARGB_PRE pixels.
+     *
+     * @param bimg the source AWT image
+     * @param width the target width in pixels
+     * @param height the target height in pixels
+     * @param array the target array
+     * @param offset the index of the first pixel in the target array
+     * @param scan the distance between rows in the target array
+     * @throws IllegalArgumentException if the target size is not positive
+     */
+    public void scale(BufferedImage bimg, int width, int height, int[] array, int offset, int scan) {
+        checkSize(width, height);
+        for (int y = 0; y < height; y++) {
+            scaleRow(bimg, width, height, y, array, offset + y * scan);
+        }
+    }
+
+    private static void checkSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Target size must be positive: " + width + "x" + height);
+        }
+    }
+
+    /**
+     * Computes one target row.
+     */
+    private void scaleRow(BufferedImage bimg, int width, int height, int y, int[] dst, int pos) {
+        if (filter == Filter.BOX) {
+            boxRow(bimg, width, height, y, dst, pos);
+        } else {
+            bilinearRow(bimg, width, height, y, dst, pos);
+        }
+    }
+
+    /**
+     * Reads one source row as INT_ARGB_PRE pixels into the given array.
+     */
+    private static int[] readRow(BufferedImage bimg, int y, int[] row) {
+        int sw = bimg.getWidth();
+        switch (bimg.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+            case BufferedImage.TYPE_INT_RGB:
+                Raster raster = bimg.getRaster();
+                int tx = raster.getSampleModelTranslateX();
+                int ty = raster.getSampleModelTranslateY();
+                DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+                var sppsm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                int src = db.getOffset() + sppsm.getOffset(-tx, y - ty);
+                int[] data = db.getData();
+                int type = bimg.getType();
+                if (type == BufferedImage.TYPE_INT_ARGB) {
+                    AlphaConverter.premultiply(data, src, row, 0, sw);
+                } else if (type == BufferedImage.TYPE_INT_ARGB_PRE) {
+                    System.arraycopy(data, src, row, 0, sw);
+                } else {
+                    for (int x = 0; x < sw; x++) {
+                        row[x] = data[src + x] | OPAQUE;
+                    }
+                }
+                break;
+            default:
+                bimg.getRGB(0, y, sw, 1, row, 0, sw);
+                AlphaConverter.premultiply(row, 0, row, 0, sw);
+                break;
+        }
+        return row;
+    }
+
+    /**
+     * Computes the source columns of each target column, unless they were
+     * already computed for the same source and target widths. For the box
+     * filter, each target column starts at {@code xs[x]} and ends before
+     * {@code xs[x + 1]}; for the bilinear filter, it is interpolated from
+     * {@code xs[x]} and the column after it with the weight {@code fxs[x]}.
+     */
+    private void computeColumns(int sw, int width) {
+        if (xs != null && columnSource == sw && columnWidth == width) {
+            return;
+        }
+        if (xs == null || xs.length < width + 1) {
+            xs = new int[width + 1];
+        }
+        if (filter == Filter.BOX) {
+            for (int x = 0; x <= width; x++) {
+                xs[x] = (int) ((long) x * sw / width);
+            }
+        } else {
+            if (fxs == null || fxs.length < width) {
+                fxs = new int[width];
+            }
+            for (int x = 0; x < width; x++) {
+                long fixed = Math.max(0, ((2L * x + 1) * sw * 256 / width - 256) / 2);
+                xs[x] = (int) Math.min(fixed >> 8, sw - 1);
+                fxs[x] = xs[x] == sw - 1 ? 0 : (int) (fixed & 0xff);
+            }
+        }
+        columnSource = sw;
+        columnWidth = width;
+    }
+
+    /**
+     * Averages the source rows and columns in the area of each pixel of one
+     * target row. Each channel of the premultiplied pixels is summed
+     * separately and divided with rounding. The sums of an area are long
+     * integers, because a large source scaled to a tiny target can put more
+     * pixels in one area than an integer sum of 8-bit values can hold.
+     */
+    private void boxRow(BufferedImage bimg, int width, int height, int y, int[] dst, int pos) {
+        int sw = bimg.getWidth();
+        int sh = bimg.getHeight();
+        if (row0 == null || row0.length < sw) {
+            row0 = new int[sw];
+        }
+        if (sums == null || sums.length < width * 4) {
+            sums = new long[width * 4];
+        }
+        computeColumns(sw, width);
+        int y0 = (int) ((long) y * sh / height);
+        int y1 = Math.max(y0 + 1, (int) ((long) (y + 1) * sh / height));
+        Arrays.fill(sums, 0, width * 4, 0);
+        for (int sy = y0; sy < y1; sy++) {
+            int[] row = readRow(bimg, sy, row0);
+            for (int x = 0; x < width; x++) {
+                int x0 = xs[x];
+                int x1 = Math.max(x0 + 1, xs[x + 1]);
+                int a = 0;
+                int r = 0;
+                int g = 0;
+                int b = 0;
+                for (int sx = x0; sx < x1; sx++) {
+                    int p = row[sx];
+                    a += p >>> 24;
+                    r += (p >> 16) & 0xff;
+                    g += (p >> 8) & 0xff;
+                    b += p & 0xff;
+                }
+                int i = x * 4;
+                sums[i] += a;
+                sums[i + 1] += r;
+                sums[i + 2] += g;
+                sums[i + 3] += b;
+            }
+        }
+        int rows = y1 - y0;
+        for (int x = 0; x < width; x++) {
+            int count = rows * (Math.max(xs[x] + 1, xs[x + 1]) - xs[x]);
+            int half = count / 2;
+            int i = x * 4;
+            dst[pos + x] = (int) ((sums[i] + half) / count) << 24
+                    | (int) ((sums[i + 1] + half) / count) << 16
+                    | (int) ((sums[i + 2] + half) / count) << 8
+                    | (int) ((sums[i + 3] + half) / count);
+        }
+    }
+
+    /**
+     * Interpolates each pixel of one target row from the two source rows
+     * around its center, with 8-bit fixed-point weights.
+     */
+    private void bilinearRow(BufferedImage bimg, int width, int height, int y, int[] dst, int pos) {
+        int sw = bimg.getWidth();
+        int sh = bimg.getHeight();
+        if (row0 == null || row0.length < sw) {
+            row0 = new int[sw];
+        }
+        if (row1 == null || row1.length < sw) {
+            row1 = new int[sw];
+        }
+        computeColumns(sw, width);
+        long fixed = Math.max(0, ((2L * y + 1) * sh * 256 / height - 256) / 2);
+        int sy = (int) Math.min(fixed >> 8, sh - 1);
+        int fy = sy == sh - 1 ? 0 : (int) (fixed & 0xff);
+        int[] top = readRow(bimg, sy, row0);
+        int[] bottom = fy == 0 ? top : readRow(bimg, sy + 1, row1);
+        for (int x = 0; x < width; x++) {
+            int sx = xs[x];
+            int fx = fxs[x];
+            int sx1 = fx == 0 ? sx : sx + 1;
+            int w00 = (256 - fx) * (256 - fy);
+            int w01 = fx * (256 - fy);
+            int w10 = (256 - fx) * fy;
+            int w11 = fx * fy;
+            int p00 = top[sx];
+            int p01 = top[sx1];
+            int p10 = bottom[sx];
+            int p11 = bottom[sx1];
+            int pixel = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                int c = ((p00 >>> shift) & 0xff) * w00 + ((p01 >>> shift) & 0xff) * w01
+                        + ((p10 >>> shift) & 0xff) * w10 + ((p11 >>> shift) & 0xff) * w11;
+                pixel |= ((c + 0x8000) >>> 16) << shift;
+            }
+            dst[pos + x] = pixel;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.util.Arrays;
+
+/**
+ * Expands the palette indices of indexed AWT images into INT_ARGB_PRE pixels
+ * through a premultiplied lookup table.
+ *
+ * @author John Neffenger
+ */
+final class IndexedPixels {
+
+    private IndexedPixels() {
+    }
+
+    /**
+     * Checks whether the AWT image has a raster that can be expanded by this
+     * class.
+     *
+     * @param image the AWT image
+     * @return {@code true} if the image is of type {@code TYPE_BYTE_INDEXED}
+     * or {@code TYPE_BYTE_BINARY}; otherwise {@code false}
+     */
+    static boolean isIndexed(BufferedImage image) {
+        int type = image.getType();
+        return type == BufferedImage.TYPE_BYTE_INDEXED || type == BufferedImage.TYPE_BYTE_BINARY;
+    }
+
+    /**
+     * Reads the palette of an indexed AWT image into a lookup table of
+     * INT_ARGB_PRE colors. The table has at least 256 entries so that it can
+     * be indexed by any unsigned byte value; entries beyond the size of the
+     * palette are transparent.
+     *
+     * @param model the color model of the indexed AWT image
+     * @param palette an existing table to reuse, or {@code null}
+     * @return the existing table if it was large enough, or a new table
+     */
+    static int[] getPalette(IndexColorModel model, int[] palette) {
+        int size = model.getMapSize();
+        if (palette == null || palette.length < Math.max(size, 256)) {
+            palette = new int[Math.max(size, 256)];
+        }
+        model.getRGBs(palette);
+        Arrays.fill(palette, size, palette.length, 0);
+        AlphaConverter.premultiply(palette, 0, palette, 0, size);
+        return palette;
+    }
+
+    /**
+     * Expands the palette indices of an indexed AWT image into an array of
+     * INT_ARGB_PRE pixels. The image must be of type
+     * {@code TYPE_BYTE_INDEXED} with 8-bit indices or {@code TYPE_BYTE_BINARY}
+     * with packed 1, 2, or 4-bit indices.
+     *
+     * @param image the indexed AWT image
+     * @param palette the premultiplied lookup table of the image
+     * @param array the target array
+     * @param offset the index of the first pixel in the target array
+     * @param scan the distance between rows in the target array
+     */
+    static void expand(BufferedImage image, int[] palette, int[] array, int offset, int scan) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Raster raster = image.getRaster();
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] data = buffer.getData();
+        SampleModel model = raster.getSampleModel();
+        if (model instanceof ComponentSampleModel) {
+            var csm = (ComponentSampleModel) model;
+            int stride = csm.getScanlineStride();
+            int start = buffer.getOffset() + csm.getOffset(-tx, -ty);
+            for (int y = 0; y < height; y++) {
+                int src = start + y * stride;
+                int dst = offset + y * scan;
+                for (int x = 0; x < width; x++) {
+                    array[dst + x] = palette[data[src + x] & 0xff];
+                }
+            }
+        } else {
+            var mpsm = (MultiPixelPackedSampleModel) model;
+            int bits = mpsm.getPixelBitStride();
+            int mask = (1 << bits) - 1;
+            for (int y = 0; y < height; y++) {
+                int src = buffer.getOffset() + mpsm.getOffset(-tx, y - ty);
+                int shift = 8 - bits - mpsm.getBitOffset(-tx);
+                int dst = offset + y * scan;
+                int value = data[src] & 0xff;
+                for (int x = 0; x < width; x++) {
+                    if (shift < 0) {
+                        value = data[++src] & 0xff;
+                        shift = 8 - bits;
+                    }
+                    array[dst + x] = palette[(value >> shift) & mask];
+                    shift -= bits;
+                }
+            }
+        }
+    }
+}
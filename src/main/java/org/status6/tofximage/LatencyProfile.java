@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.Statistics;
+
+/**
+ * Runs the conversion methods in {@link Benchmarks} in sample time mode and
+ * prints the latency percentiles of each method, because a dropped frame is
+ * caused by one slow conversion rather than by a low average. The command
+ * line accepts the same options as the JMH runner, and selects the
+ * conversion methods in {@code Benchmarks} when no benchmarks are given. Run
+ * a quick test with a command like the following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -cp target/benchmarks.jar org.status6.tofximage.LatencyProfile \
+ *   -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class LatencyProfile {
+
+    /**
+     * The benchmarks selected when none are given on the command line.
+     */
+    private static final String DEFAULT_INCLUDE = "^" + Benchmarks.class.getName().replace(".", "\\.") + "\\.";
+
+    /**
+     * Prints the percentiles of each result in microseconds.
+     *
+     * @param results the results of the benchmark run
+     */
+    private static void printSummary(Collection<RunResult> results) {
+        System.out.println();
+        System.out.printf("%-40s %-24s %10s %10s %10s %10s  %s%n",
+                "Benchmark", "(params)", "p50", "p99", "p99.9", "max", "Units");
+        for (RunResult result : results) {
+            var params = result.getParams();
+            var values = new StringBuilder();
+            for (String key : params.getParamsKeys()) {
+                values.append(values.length() == 0 ? "" : ",").append(params.getParam(key));
+            }
+            String name = params.getBenchmark();
+            name = name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1);
+            Statistics stats = result.getPrimaryResult().getStatistics();
+            System.out.printf("%-40s %-24s %10.1f %10.1f %10.1f %10.1f  %s%n",
+                    name, values, stats.getPercentile(50), stats.getPercentile(99),
+                    stats.getPercentile(99.9), stats.getMax(), result.getPrimaryResult().getScoreUnit());
+        }
+    }
+
+    /**
+     * Runs the benchmarks in sample time mode and prints a summary of their
+     * latency percentiles.
+     *
+     * @param args the JMH command-line options
+     * @throws CommandLineOptionException if the options are not valid
+     * @throws RunnerException if an error occurs running the benchmarks
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        var cmdOptions = new CommandLineOptions(args);
+        var builder = new OptionsBuilder().parent(cmdOptions)
+                .mode(Mode.SampleTime)
+                .timeUnit(TimeUnit.MICROSECONDS);
+        if (cmdOptions.getIncludes().isEmpty()) {
+            builder.include(DEFAULT_INCLUDE);
+        }
+        printSummary(new Runner(builder.build()).run());
+    }
+}
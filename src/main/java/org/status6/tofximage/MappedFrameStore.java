@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+import javax.imageio.ImageReader;
+
+/**
+ * Stores the decoded frames of an animation off the Java heap in a file of
+ * raw pixels, mapped into memory. Each frame is stored in the BYTE_BGRA_PRE
+ * format, one after the other with no header, so that the buffer of each frame
+ * can back a {@code PixelBuffer<ByteBuffer>} directly.
+ * <p>
+ * The pages of a frame are read from the file on first access, and each
+ * page costs a page fault. A {@link Prefetch} policy can move that cost off
+ * the thread that plays the frames, either by loading the whole file when it
+ * is opened or by loading the frames just ahead of the last one requested on
+ * a background thread.</p>
+ * <p>
+ * The file remains mapped until the buffers of its frames are garbage
+ * collected, even after the file itself is deleted or the store is
+ * closed.</p>
+ *
+ * @author John Neffenger
+ */
+public class MappedFrameStore implements AutoCloseable {
+
+    /**
+     * The policies for loading frames into memory before they are used.
+     */
+    public enum Prefetch {
+        /**
+         * Loads nothing in advance, so each page of a frame faults on its
+         * first access.
+         */
+        NONE,
+        /**
+         * Loads the frames following the last one requested on a background
+         * thread, up to the prefetch distance.
+         */
+        AHEAD,
+        /**
+         * Loads every frame when the file is opened.
+         */
+        ALL
+    }
+
+    private final int width;
+    private final int height;
+    private final MappedByteBuffer[] frames;
+    private final Prefetcher prefetcher;
+
+    /**
+     * Loads the frames ahead of the last one requested on a daemon thread.
+     */
+    private static final class Prefetcher implements Runnable {
+
+        private final MappedByteBuffer[] frames;
+        private final int distance;
+        private final Thread thread;
+
+        private volatile int wanted = -1;
+        private volatile boolean closed;
+
+        private Prefetcher(MappedByteBuffer[] frames, int distance) {
+            this.frames = frames;
+            this.distance = Math.min(distance, frames.length - 1);
+            thread = new Thread(this, "MappedFrameStore Prefetcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void request(int index) {
+            if (wanted != index) {
+                wanted = index;
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            int n = frames.length;
+            int last = -1;
+            int loaded = -1;
+            while (!closed) {
+                int index = wanted;
+                if (index == last) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                last = index;
+                // Continues after the last frame loaded if it is still ahead.
+                int ahead = loaded == -1 ? 0 : (loaded - index + n) % n;
+                int start = ahead > 0 && ahead <= distance ? ahead + 1 : 1;
+                for (int i = start; i <= distance && !closed && wanted == index; i++) {
+                    loaded = (index + i) % n;
+                    frames[loaded].load();
+                }
+            }
+        }
+
+        private void close() {
+            closed = true;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Decodes all frames from the image reader into a new file of raw pixels
+     * in BYTE_BGRA_PRE format, then maps the file into memory. The frames are
+     * decoded one at a time, so only one frame is on the Java heap at once.
+     *
+     * @param reader the image reader with its input already set
+     * @param file the file to create or replace
+     * @return the frame store of the new file
+     * @throws IOException if an error occurs reading the frames or writing the
+     * file, or if the frames are not all the same size
+     */
+    public static MappedFrameStore create(ImageReader reader, Path file) throws IOException {
+        return create(reader, file, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Decodes at most the given number of frames from the image reader into a
+     * new file of raw pixels in BYTE_BGRA_PRE format, then maps the file into
+     * memory.
+     *
+     * @param reader the image reader with its input already set
+     * @param file the file to create or replace
+     * @param limit the maximum number of frames to decode
+     * @return the frame store of the new file
+     * @throws IOException if an error occurs reading the frames or writing the
+     * file, or if the frames are not all the same size
+     */
+    public static MappedFrameStore create(ImageReader reader, Path file, int limit) throws IOException {
+        int count = Math.min(limit, reader.getNumImages(true));
+        if (count <= 0) {
+            throw new IOException("Error reading image: no frames");
+        }
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        var buffer = ByteBuffer.allocateDirect(getFrameSize(width, height));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int[] row = new int[width];
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < count; i++) {
+                BufferedImage frame = reader.read(i);
+                if (frame.getWidth() != width || frame.getHeight() != height) {
+                    throw new IOException("Error reading image: frame " + i + " has a different size");
+                }
+                for (int y = 0; y < height; y++) {
+                    frame.getRGB(0, y, width, 1, row, 0, width);
+                    AlphaConverter.premultiply(row, 0, buffer, y * width, width);
+                }
+                buffer.clear();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+        return open(file, width, height);
+    }
+
+    /**
+     * Maps an existing file of raw pixels in BYTE_BGRA_PRE format into memory.
+     *
+     * @param file the file of raw pixels
+     * @param width the width of each frame in pixels
+     * @param height the height of each frame in pixels
+     * @return the frame store of the file
+     * @throws IOException if an error occurs mapping the file, or if its size
+     * is not a multiple of the frame size
+     */
+    public static MappedFrameStore open(Path file, int width, int height) throws IOException {
+        return open(file, width, height, Prefetch.NONE, 0);
+    }
+
+    /**
+     * Maps an existing file of raw pixels in BYTE_BGRA_PRE format into memory
+     * with a prefetch policy. The store must be closed to stop its
+     * background thread when the policy is {@link Prefetch#AHEAD}.
+     *
+     * @param file the file of raw pixels
+     * @param width the width of each frame in pixels
+     * @param height the height of each frame in pixels
+     * @param prefetch the policy for loading frames before they are used
+     * @param distance the number of frames to load ahead of the last one
+     * requested with the {@code AHEAD} policy
+     * @return the frame store of the file
+     * @throws IOException if an error occurs mapping the file, or if its size
+     * is not a multiple of the frame size
+     * @throws IllegalArgumentException if the distance is not positive with
+     * the {@code AHEAD} policy
+     */
+    public static MappedFrameStore open(Path file, int width, int height, Prefetch prefetch, int distance)
+            throws IOException {
+        if (prefetch == Prefetch.AHEAD && distance <= 0) {
+            throw new IllegalArgumentException("Prefetch distance must be positive: " + distance);
+        }
+        int frameSize = getFrameSize(width, height);
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % frameSize != 0) {
+                throw new IOException("File size " + size + " is not a multiple of the frame size " + frameSize);
+            }
+            var frames = new MappedByteBuffer[(int) (size / frameSize)];
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = channel.map(FileChannel.MapMode.READ_ONLY, (long) i * frameSize, frameSize);
+                if (prefetch == Prefetch.ALL) {
+                    frames[i].load();
+                }
+            }
+            var prefetcher = prefetch == Prefetch.AHEAD && frames.length > 1 ? new Prefetcher(frames, distance) : null;
+            return new MappedFrameStore(width, height, frames, prefetcher);
+        }
+    }
+
+    /**
+     * Gets the number of bytes in one frame.
+     *
+     * @throws IllegalArgumentException if a frame is empty or larger than the
+     * largest possible buffer
+     */
+    private static int getFrameSize(int width, int height) {
+        long size = (long) width * height * Integer.BYTES;
+        if (size <= 0 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid frame size: " + width + "x" + height);
+        }
+        return (int) size;
+    }
+
+    private MappedFrameStore(int width, int height, MappedByteBuffer[] frames, Prefetcher prefetcher) {
+        this.width = width;
+        this.height = height;
+        this.frames = frames;
+        this.prefetcher = prefetcher;
+    }
+
+    /**
+     * Gets the width of each frame.
+     *
+     * @return the width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of each frame.
+     *
+     * @return the height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the number of frames in the store.
+     *
+     * @return the number of frames
+     */
+    public int getCount() {
+        return frames.length;
+    }
+
+    /**
+     * Gets the read-only buffer of a frame, which can back a
+     * {@code PixelBuffer<ByteBuffer>} in BYTE_BGRA_PRE format. The same buffer
+     * is returned on each call, so callers that change its position or limit
+     * must reset them before passing it on. With the {@code AHEAD} policy,
+     * the frames following this one are loaded in the background.
+     *
+     * @param index the index of the frame
+     * @return the buffer of the frame
+     */
+    public ByteBuffer getFrame(int index) {
+        if (prefetcher != null) {
+            prefetcher.request(index);
+        }
+        return frames[index];
+    }
+
+    /**
+     * Stops loading frames in the background. The buffers of the frames
+     * remain valid.
+     */
+    @Override
+    public void close() {
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
+    }
+}
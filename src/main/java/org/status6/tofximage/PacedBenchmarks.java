@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.AggregationPolicy;
+
+/**
+ * Converts frames at the fixed cadence of a display with a
+ * {@link FramePacer}, instead of as fast as possible, and reports how often
+ * the conversions miss their deadlines. The score is the number of frames
+ * per second, which stays at the frame rate while the conversion keeps up.
+ * The secondary results report the deadline misses, the misses during which
+ * the garbage collector ran and the dropped frames, together with the
+ * maximum lateness and the jitter in milliseconds. Run a quick test of only
+ * these benchmarks with a command like the following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar PacedBenchmarks -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class PacedBenchmarks {
+
+    /**
+     * The file name of the source animation.
+     */
+    private static final String FILE_NAME = "doll-dancing.gif";
+
+    @State(Scope.Thread)
+    public static class SourceAwtImage {
+
+        private ArrayList<BufferedImage> frames;
+        private int width;
+        private int height;
+        private int index;
+
+        private void nextFrame() {
+            index = index == frames.size() - 1 ? 0 : index + 1;
+        }
+
+        @Setup
+        public void doSetup() throws IOException {
+            var input = PacedBenchmarks.class.getResourceAsStream("/" + FILE_NAME);
+            if (input == null) {
+                throw new IOException("Error loading image");
+            }
+            ImageInputStream stream = ImageIO.createImageInputStream(input);
+            ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+            reader.setInput(stream);
+            int count = reader.getNumImages(true);
+            frames = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                frames.add(reader.read(i));
+            }
+            stream.close();
+            reader.dispose();
+            width = frames.get(0).getWidth();
+            height = frames.get(0).getHeight();
+            index = 0;
+        }
+
+        @TearDown
+        public void doTearDown() {
+            frames.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetJfxImage {
+
+        private WritableImage image;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            image = new WritableImage(awt.width, awt.height);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetIntBuffer {
+
+        private IntBuffer buffer;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            buffer = IntBuffer.allocate(awt.width * awt.height);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Context {
+
+        private ConversionContext context;
+        private int[] palette;
+        private int[] row;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            context = new ConversionContext();
+            row = new int[awt.width];
+        }
+
+        @TearDown
+        public void doTearDown() {
+            context.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FrameRate {
+
+        /**
+         * The frame rate in frames per second.
+         */
+        @Param({"60", "120"})
+        public int rate;
+    }
+
+    /**
+     * Paces the frames of each iteration and reports their counts as
+     * counters, which JMH adds up over the iterations. The maximum lateness
+     * and the jitter are not counts, so they are recorded with the
+     * {@link StateProfiler} instead, as the largest and the mean over the
+     * iterations. The frame rate is kept in a separate state because JMH
+     * reports every public field of this state as a counter.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Pacing {
+
+        public long misses;
+        public long gcMisses;
+        public long dropped;
+
+        private FramePacer pacer;
+
+        @Setup(Level.Iteration)
+        public void doSetup(FrameRate frameRate) {
+            if (pacer == null) {
+                pacer = new FramePacer(frameRate.rate);
+            }
+            pacer.reset();
+            update();
+        }
+
+        @TearDown(Level.Iteration)
+        public void doTearDown() {
+            StateProfiler.record("pacing.maxLateness", pacer.getMaxLateness() / 1e6, "ms", AggregationPolicy.MAX);
+            StateProfiler.record("pacing.jitter", pacer.getJitter() / 1e6, "ms", AggregationPolicy.AVG);
+        }
+
+        private void update() {
+            misses = pacer.getMisses();
+            gcMisses = pacer.getGcMisses();
+            dropped = pacer.getDropped();
+        }
+
+        private void begin() {
+            pacer.beginFrame();
+        }
+
+        private void end() {
+            pacer.endFrame();
+            update();
+        }
+    }
+
+    /**
+     * Converts the next frame with {@link SwingFXUtils#toFXImage} at the
+     * frame rate (correct).
+     *
+     * @param awt the source AWT image
+     * @param jfx the target JavaFX image
+     * @param pacing the frame pacer and its statistics
+     * @param blackhole used to consume the output of the utility method
+     */
+    @Benchmark
+    public void toFXImage(SourceAwtImage awt, TargetJfxImage jfx, Pacing pacing, Blackhole blackhole) {
+        pacing.begin();
+        blackhole.consume(SwingFXUtils.toFXImage(awt.frames.get(awt.index), jfx.image));
+        pacing.end();
+        awt.nextFrame();
+    }
+
+    /**
+     * Converts the next frame with a {@link ConversionContext} at the frame
+     * rate (correct).
+     *
+     * @param awt the source AWT image
+     * @param ctx the conversion context
+     * @param jfx the target JavaFX image
+     * @param pacing the frame pacer and its statistics
+     * @param blackhole used to consume the output of the conversion
+     */
+    @Benchmark
+    public void toFXImageContext(SourceAwtImage awt, Context ctx, TargetJfxImage jfx, Pacing pacing,
+            Blackhole blackhole) {
+        pacing.begin();
+        blackhole.consume(ctx.context.toFXImage(awt.frames.get(awt.index), jfx.image));
+        pacing.end();
+        awt.nextFrame();
+    }
+
+    /**
+     * Gets the pixels of the next frame directly into the integer buffer of a
+     * {@code PixelBuffer} at the frame rate, like
+     * {@link Benchmarks#putDirectIntoInts} (wrong alpha).
+     *
+     * @param awt the source AWT image
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param pacing the frame pacer and its statistics
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putDirectIntoInts(SourceAwtImage awt, TargetIntBuffer jfx, Pacing pacing, Blackhole blackhole) {
+        pacing.begin();
+        awt.frames.get(awt.index).getRGB(0, 0, awt.width, awt.height, jfx.buffer.array(), 0, awt.width);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+        pacing.end();
+        awt.nextFrame();
+    }
+
+    /**
+     * Premultiplies the next frame row by row into the integer buffer of a
+     * {@code PixelBuffer} at the frame rate, like
+     * {@link Benchmarks#putPremultipliedIntoInts} (correct).
+     *
+     * @param awt the source AWT image
+     * @param ctx the intermediate row in INT_ARGB pixel format
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param pacing the frame pacer and its statistics
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putPremultipliedIntoInts(SourceAwtImage awt, Context ctx, TargetIntBuffer jfx, Pacing pacing,
+            Blackhole blackhole) {
+        pacing.begin();
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        for (int y = 0; y < awt.height; y++) {
+            awtImage.getRGB(0, y, awt.width, 1, ctx.row, 0, awt.width);
+            AlphaConverter.premultiply(ctx.row, 0, jfx.buffer, y * awt.width, awt.width);
+        }
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+        pacing.end();
+        awt.nextFrame();
+    }
+
+    /**
+     * Expands the palette indices of the next frame into the integer buffer
+     * of a {@code PixelBuffer} at the frame rate, like
+     * {@link Benchmarks#putIndexedIntoInts} (correct).
+     *
+     * @param awt the source AWT image
+     * @param ctx the reusable palette lookup table
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param pacing the frame pacer and its statistics
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putIndexedIntoInts(SourceAwtImage awt, Context ctx, TargetIntBuffer jfx, Pacing pacing,
+            Blackhole blackhole) {
+        pacing.begin();
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        ctx.palette = IndexedPixels.getPalette((IndexColorModel) awtImage.getColorModel(), ctx.palette);
+        IndexedPixels.expand(awtImage, ctx.palette, jfx.buffer.array(), 0, awt.width);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, awt.width, awt.height));
+        pacing.end();
+        awt.nextFrame();
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the sequential conversion of large images with their parallel
+ * conversion in bands of rows, sweeping the image size, the number of threads,
+ * and the band height. Run a quick test of only these benchmarks with a
+ * command like the following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar ParallelBenchmarks -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class ParallelBenchmarks {
+
+    /**
+     * The file name of the image scaled to create the source AWT image.
+     */
+    private static final String FILE_NAME = "doll-dancing.gif";
+
+    @State(Scope.Thread)
+    public static class SourceAwtImage {
+
+        @Param({"1280x720", "1920x1080", "3840x2160"})
+        public String size;
+
+        private BufferedImage image;
+        private int width;
+        private int height;
+
+        @Setup
+        public void doSetup() throws IOException {
+            String[] values = size.split("x");
+            width = Integer.parseInt(values[0]);
+            height = Integer.parseInt(values[1]);
+            var input = ParallelBenchmarks.class.getResource("/" + FILE_NAME);
+            if (input == null) {
+                throw new IOException("Error loading image");
+            }
+            BufferedImage frame = ImageIO.read(input);
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = image.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(frame, 0, 0, width, height, null);
+            graphics.dispose();
+        }
+
+        @TearDown
+        public void doTearDown() {
+            image.flush();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Converter {
+
+        @Param({"1", "2", "4"})
+        public int threads;
+
+        @Param({"16", "64", "256"})
+        public int bandHeight;
+
+        private ForkJoinPool pool;
+        private ParallelConverter converter;
+
+        @Setup
+        public void doSetup() {
+            pool = new ForkJoinPool(threads);
+            converter = new ParallelConverter(pool, bandHeight);
+        }
+
+        @TearDown
+        public void doTearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetJfxImage {
+
+        private WritableImage image;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            image = new WritableImage(awt.width, awt.height);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetIntBuffer {
+
+        private IntBuffer buffer;
+        private PixelBuffer<IntBuffer> pixels;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            buffer = IntBuffer.allocate(awt.width * awt.height);
+            pixels = new PixelBuffer<>(awt.width, awt.height, buffer, PixelFormat.getIntArgbPreInstance());
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TempArray {
+
+        private int[] array;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            array = new int[awt.width * awt.height];
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    /**
+     * Gets the pixels of the source AWT image into an intermediate array; then
+     * writes the array to the JavaFX image using a {@code PixelWriter} on the
+     * benchmark thread. This method copies pixels in the INT_ARGB format as
+     * INT_ARGB pixels (correct).
+     *
+     * @param awt the source AWT image
+     * @param tmp the intermediate array in INT_ARGB pixel format
+     * @param jfx the target JavaFX image
+     */
+    @Benchmark
+    public void setArrayAsArgb(SourceAwtImage awt, TempArray tmp, TargetJfxImage jfx) {
+        awt.image.getRGB(0, 0, awt.width, awt.height, tmp.array, 0, awt.width);
+        jfx.image.getPixelWriter().setPixels(0, 0, awt.width, awt.height,
+                PixelFormat.getIntArgbInstance(), tmp.array, 0, awt.width);
+    }
+
+    /**
+     * Gets the pixels of the source AWT image into an intermediate array and
+     * writes them to the JavaFX image using a {@code PixelWriter}, in parallel
+     * bands of rows. This method copies pixels in the INT_ARGB format as
+     * INT_ARGB pixels (correct).
+     *
+     * @param awt the source AWT image
+     * @param cvt the parallel converter
+     * @param tmp the intermediate array in INT_ARGB pixel format
+     * @param jfx the target JavaFX image
+     */
+    @Benchmark
+    public void setBandsAsArgb(SourceAwtImage awt, Converter cvt, TempArray tmp, TargetJfxImage jfx) {
+        cvt.converter.setPixels(awt.image, tmp.array, jfx.image.getPixelWriter());
+    }
+
+    /**
+     * Gets the pixels of the source AWT image directly into the integer buffer
+     * of a {@code PixelBuffer} on the benchmark thread. This method copies
+     * pixels in the INT_ARGB format into an integer buffer as INT_ARGB_PRE
+     * pixels (wrong alpha).
+     *
+     * @param awt the source AWT image
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putDirectIntoInts(SourceAwtImage awt, TargetIntBuffer jfx, Blackhole blackhole) {
+        awt.image.getRGB(0, 0, awt.width, awt.height, jfx.buffer.array(), 0, awt.width);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, jfx.pixels.getWidth(), jfx.pixels.getHeight()));
+    }
+
+    /**
+     * Gets the pixels of the source AWT image directly into the integer buffer
+     * of a {@code PixelBuffer} in parallel bands of rows. This method copies
+     * pixels in the INT_ARGB format into an integer buffer as INT_ARGB_PRE
+     * pixels (wrong alpha).
+     *
+     * @param awt the source AWT image
+     * @param cvt the parallel converter
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void putBandsIntoInts(SourceAwtImage awt, Converter cvt, TargetIntBuffer jfx, Blackhole blackhole) {
+        cvt.converter.getPixels(awt.image, jfx.buffer.array());
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, jfx.pixels.getWidth(), jfx.pixels.getHeight()));
+    }
+}
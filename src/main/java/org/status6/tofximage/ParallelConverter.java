@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
+
+/**
+ * Converts an AWT image to a JavaFX image in parallel. The image is split into
+ * bands of whole rows, and each band is copied with a single bulk operation by
+ * a task in a fork/join pool. Bands of full rows keep each task reading and
+ * writing contiguous memory, unlike splitting the work pixel by pixel.
+ *
+ * @author John Neffenger
+ */
+public class ParallelConverter {
+
+    /**
+     * The default number of rows in each band.
+     */
+    public static final int BAND_HEIGHT = 32;
+
+    /**
+     * Copies one band of rows.
+     */
+    @FunctionalInterface
+    private interface Band {
+
+        void copy(int y, int height);
+    }
+
+    /**
+     * Splits a range of rows in half until it is no taller than one band.
+     */
+    private class BandTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int y;
+        private final int height;
+        private final Band band;
+
+        BandTask(int y, int height, Band band) {
+            this.y = y;
+            this.height = height;
+            this.band = band;
+        }
+
+        @Override
+        protected void compute() {
+            int count = (height + bandHeight - 1) / bandHeight;
+            if (count <= 1) {
+                band.copy(y, height);
+            } else {
+                int half = count / 2 * bandHeight;
+                invokeAll(new BandTask(y, half, band), new BandTask(y + half, height - half, band));
+            }
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int bandHeight;
+
+    /**
+     * Creates a converter that runs on the common fork/join pool with the
+     * default band height.
+     */
+    public ParallelConverter() {
+        this(ForkJoinPool.commonPool(), BAND_HEIGHT);
+    }
+
+    /**
+     * Creates a converter that runs on the given fork/join pool with the given
+     * band height.
+     *
+     * @param pool the pool that runs the band tasks
+     * @param bandHeight the number of rows in each band
+     * @throws IllegalArgumentException if the band height is less than one
+     */
+    public ParallelConverter(ForkJoinPool pool, int bandHeight) {
+        if (bandHeight < 1) {
+            throw new IllegalArgumentException("Band height must be positive: " + bandHeight);
+        }
+        this.pool = pool;
+        this.bandHeight = bandHeight;
+    }
+
+    /**
+     * Gets the pixels of the AWT image into an intermediate array; then writes
+     * them to the JavaFX image using its {@code PixelWriter}, band by band.
+     * This method copies pixels in the INT_ARGB format as INT_ARGB pixels.
+     * <p>
+     * The first band is copied on the calling thread. Its write promotes the
+     * JavaFX image to a writable platform image, which is not safe to do
+     * concurrently, before the remaining bands are written in parallel.</p>
+     *
+     * @param source the source AWT image
+     * @param array the intermediate array, at least as large as the image
+     * @param writer the pixel writer of the target JavaFX image
+     */
+    public void setPixels(BufferedImage source, int[] array, PixelWriter writer) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        Band band = (y, h) -> {
+            int offset = y * width;
+            source.getRGB(0, y, width, h, array, offset, width);
+            writer.setPixels(0, y, width, h, PixelFormat.getIntArgbInstance(), array, offset, width);
+        };
+        int first = Math.min(bandHeight, height);
+        band.copy(0, first);
+        if (first < height) {
+            pool.invoke(new BandTask(first, height - first, band));
+        }
+    }
+
+    /**
+     * Gets the pixels of the AWT image directly into an array, band by band.
+     * The array can be the backing array of the integer buffer of a
+     * {@code PixelBuffer}. This method copies pixels in the INT_ARGB format.
+     *
+     * @param source the source AWT image
+     * @param array the target array, at least as large as the image
+     */
+    public void getPixels(BufferedImage source, int[] array) {
+        int width = source.getWidth();
+        pool.invoke(new BandTask(0, source.getHeight(), (y, h) -> {
+            source.getRGB(0, y, width, h, array, y * width, width);
+        }));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.util.Arrays;
+import javafx.geometry.Rectangle2D;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.AggregationPolicy;
+
+/**
+ * Measures the sustained throughput and end-to-end frame latency of a
+ * {@link FramePipeline} that streams the animation instead of decoding all of
+ * its frames up front. Each benchmark operation presents one frame, so the
+ * score is the number of frames per second that the pipeline sustains. The
+ * secondary results report the distribution of the latency in milliseconds,
+ * from the start of decoding to presentation. Run a quick test of only these
+ * benchmarks with a command like the following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar PipelineBenchmarks -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class PipelineBenchmarks {
+
+    /**
+     * The file name of the source animation.
+     */
+    private static final String FILE_NAME = "doll-dancing.gif";
+
+    /**
+     * Gets the conversion of the given strategy, named after the benchmark in
+     * {@link Benchmarks} that converts its frames the same way.
+     *
+     * @param strategy the name of the conversion strategy
+     * @param width the width of each frame
+     * @return the conversion
+     * @throws IllegalArgumentException if the strategy is not supported
+     */
+    private static FramePipeline.Conversion getConversion(String strategy, int width) {
+        switch (strategy) {
+            case "putDirectIntoInts":
+                return (image, pixels) -> image.getRGB(0, 0, width, image.getHeight(), pixels, 0, width);
+            case "putPremultipliedIntoInts":
+                int[] row = new int[width];
+                return (image, pixels) -> {
+                    for (int y = 0; y < image.getHeight(); y++) {
+                        image.getRGB(0, y, width, 1, row, 0, width);
+                        AlphaConverter.premultiply(row, 0, pixels, y * width, width);
+                    }
+                };
+            case "putIndexedIntoInts":
+                int[][] palette = new int[1][];
+                return (image, pixels) -> {
+                    palette[0] = IndexedPixels.getPalette((IndexColorModel) image.getColorModel(), palette[0]);
+                    IndexedPixels.expand(image, palette[0], pixels, 0, width);
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported strategy: " + strategy);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pipeline {
+
+        /**
+         * The number of frames in the pipeline, shared by its rings.
+         */
+        @Param({"1", "2", "3", "4", "8"})
+        public int depth;
+
+        /**
+         * The conversion strategy of the second stage.
+         */
+        @Param({"putDirectIntoInts", "putPremultipliedIntoInts", "putIndexedIntoInts"})
+        public String strategy;
+
+        private ImageReader reader;
+        private FramePipeline pipeline;
+
+        @Setup
+        public void doSetup() throws IOException {
+            var input = PipelineBenchmarks.class.getResourceAsStream("/" + FILE_NAME);
+            if (input == null) {
+                throw new IOException("Error loading image");
+            }
+            ImageInputStream stream = ImageIO.createImageInputStream(input);
+            reader = ImageIO.getImageReadersByFormatName("gif").next();
+            reader.setInput(stream);
+            pipeline = new FramePipeline(reader, getConversion(strategy, reader.getWidth(0)), depth);
+            pipeline.start();
+        }
+
+        @TearDown
+        public void doTearDown() throws IOException {
+            pipeline.close();
+            ((ImageInputStream) reader.getInput()).close();
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Records the end-to-end latency of each frame presented in an iteration
+     * and reports its distribution in milliseconds with the
+     * {@link StateProfiler}. The percentiles and the mean are averaged over
+     * the iterations, and the maximum is the largest of any iteration. None
+     * of them is an auxiliary counter, which JMH would add up over every
+     * iteration and fork.
+     */
+    @State(Scope.Thread)
+    public static class Latency {
+
+        private static final int INITIAL_CAPACITY = 1 << 16;
+
+        private long[] samples;
+        private int count;
+
+        @Setup
+        public void doSetup() {
+            samples = new long[INITIAL_CAPACITY];
+        }
+
+        @Setup(Level.Iteration)
+        public void doIterationSetup() {
+            count = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void doIterationTearDown() {
+            if (count == 0) {
+                return;
+            }
+            Arrays.sort(samples, 0, count);
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                total += samples[i];
+            }
+            StateProfiler.record("latency.mean", total / 1e6 / count, "ms", AggregationPolicy.AVG);
+            StateProfiler.record("latency.p50", getPercentile(0.50), "ms", AggregationPolicy.AVG);
+            StateProfiler.record("latency.p90", getPercentile(0.90), "ms", AggregationPolicy.AVG);
+            StateProfiler.record("latency.p99", getPercentile(0.99), "ms", AggregationPolicy.AVG);
+            StateProfiler.record("latency.max", samples[count - 1] / 1e6, "ms", AggregationPolicy.MAX);
+        }
+
+        private double getPercentile(double p) {
+            return samples[(int) Math.ceil(p * count) - 1] / 1e6;
+        }
+
+        private void record(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+        }
+    }
+
+    /**
+     * Takes the next converted frame from the pipeline and presents it; then
+     * gives the frame back to be decoded again.
+     *
+     * @param p the frame pipeline
+     * @param latency the end-to-end latency of the presented frames
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     * @throws InterruptedException if interrupted while waiting for a frame
+     */
+    @Benchmark
+    public void presentFrame(Pipeline p, Latency latency, Blackhole blackhole) throws InterruptedException {
+        FramePipeline.Frame frame = p.pipeline.take();
+        blackhole.consume(frame.getPixels());
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, p.pipeline.getWidth(), p.pipeline.getHeight()));
+        latency.record(System.nanoTime() - frame.getStartTime());
+        p.pipeline.release(frame);
+    }
+}
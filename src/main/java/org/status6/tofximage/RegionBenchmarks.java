@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares copying one tile of an AWT image into a JavaFX image, and packing
+ * many tiles into one atlas image, with the region variant of
+ * {@link SwingFXUtils#toFXImage SwingFXUtils.toFXImage} against converting
+ * the whole image or converting each tile into its own JavaFX image first.
+ * The tiles are read through {@link BufferedImage#getSubimage getSubimage}
+ * views in the two-step methods. Run a quick test of only these benchmarks
+ * with a command like the following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar RegionBenchmarks -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class RegionBenchmarks {
+
+    /**
+     * The file name of the image used to create the source AWT image.
+     */
+    private static final String FILE_NAME = "doll-dancing.gif";
+
+    /**
+     * The size of the atlas image in pixels.
+     */
+    private static final int ATLAS_SIZE = 1024;
+
+    @State(Scope.Thread)
+    public static class SourceAwtImage {
+
+        /**
+         * The type of the source AWT image. The GIF frames are of type
+         * {@code TYPE_BYTE_BINARY}; the other type is drawn from the first
+         * frame.
+         */
+        @Param({"BYTE_BINARY", "INT_ARGB"})
+        public String type;
+
+        /**
+         * The width and height of each tile in pixels.
+         */
+        @Param({"32", "128"})
+        public int tile;
+
+        private BufferedImage image;
+        private int width;
+        private int height;
+        private int columns;
+        private int count;
+        private int index;
+
+        @Setup
+        public void doSetup() throws IOException {
+            var input = RegionBenchmarks.class.getResource("/" + FILE_NAME);
+            if (input == null) {
+                throw new IOException("Error loading image");
+            }
+            BufferedImage frame = ImageIO.read(input);
+            width = frame.getWidth();
+            height = frame.getHeight();
+            switch (type) {
+                case "BYTE_BINARY":
+                    image = frame;
+                    break;
+                case "INT_ARGB":
+                    image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D graphics = image.createGraphics();
+                    graphics.drawImage(frame, 0, 0, null);
+                    graphics.dispose();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported image type: " + type);
+            }
+            columns = width / tile;
+            count = columns * (height / tile);
+        }
+
+        @TearDown
+        public void doTearDown() {
+            image.flush();
+        }
+
+        private int nextTile() {
+            index = index + 1 < count ? index + 1 : 0;
+            return index;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetJfxImage {
+
+        private WritableImage image;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            image = new WritableImage(awt.width, awt.height);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TempJfxImage {
+
+        private WritableImage image;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            image = new WritableImage(awt.tile, awt.tile);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Atlas {
+
+        private SpriteAtlas atlas;
+
+        @Setup
+        public void doSetup() {
+            atlas = new SpriteAtlas(ATLAS_SIZE, ATLAS_SIZE, 1);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    /**
+     * Copies the whole AWT image into the JavaFX image to update one tile.
+     *
+     * @param awt the source AWT image
+     * @param jfx the target JavaFX image
+     */
+    @Benchmark
+    public void copyTileAsWholeImage(SourceAwtImage awt, TargetJfxImage jfx) {
+        awt.nextTile();
+        SwingFXUtils.toFXImage(awt.image, jfx.image);
+    }
+
+    /**
+     * Converts a subimage view of one tile into a temporary JavaFX image; then
+     * copies that image into place with a {@code PixelWriter}.
+     *
+     * @param awt the source AWT image
+     * @param tmp the temporary JavaFX image of the tile size
+     * @param jfx the target JavaFX image
+     */
+    @Benchmark
+    public void copyTileInTwoSteps(SourceAwtImage awt, TempJfxImage tmp, TargetJfxImage jfx) {
+        int i = awt.nextTile();
+        int x = i % awt.columns * awt.tile;
+        int y = i / awt.columns * awt.tile;
+        SwingFXUtils.toFXImage(awt.image.getSubimage(x, y, awt.tile, awt.tile), tmp.image);
+        jfx.image.getPixelWriter().setPixels(x, y, awt.tile, awt.tile, tmp.image.getPixelReader(), 0, 0);
+    }
+
+    /**
+     * Copies one tile of the AWT image directly into place in the JavaFX
+     * image.
+     *
+     * @param awt the source AWT image
+     * @param jfx the target JavaFX image
+     */
+    @Benchmark
+    public void copyTileAsRegion(SourceAwtImage awt, TargetJfxImage jfx) {
+        int i = awt.nextTile();
+        int x = i % awt.columns * awt.tile;
+        int y = i / awt.columns * awt.tile;
+        SwingFXUtils.toFXImage(awt.image, x, y, awt.tile, awt.tile, jfx.image, x, y);
+    }
+
+    /**
+     * Packs every tile of the AWT image into an atlas by converting each
+     * subimage view into its own JavaFX image and copying that image into
+     * place with a {@code PixelWriter}.
+     *
+     * @param awt the source AWT image
+     * @param atl the target atlas
+     * @param blackhole used to consume the temporary JavaFX images
+     */
+    @Benchmark
+    public void packAtlasInTwoSteps(SourceAwtImage awt, Atlas atl, Blackhole blackhole) {
+        var writer = atl.atlas.getImage().getPixelWriter();
+        int step = awt.tile + 1;
+        int perRow = ATLAS_SIZE / step;
+        for (int i = 0; i < awt.count; i++) {
+            int x = i % awt.columns * awt.tile;
+            int y = i / awt.columns * awt.tile;
+            WritableImage sprite = SwingFXUtils.toFXImage(awt.image.getSubimage(x, y, awt.tile, awt.tile), null);
+            writer.setPixels(i % perRow * step, i / perRow * step, awt.tile, awt.tile, sprite.getPixelReader(), 0, 0);
+            blackhole.consume(sprite);
+        }
+    }
+
+    /**
+     * Packs every tile of the AWT image into an atlas by copying each region
+     * directly into place.
+     *
+     * @param awt the source AWT image
+     * @param atl the target atlas
+     * @param blackhole used to consume the locations in the atlas
+     */
+    @Benchmark
+    public void packAtlasAsRegions(SourceAwtImage awt, Atlas atl, Blackhole blackhole) {
+        atl.atlas.reset();
+        for (int i = 0; i < awt.count; i++) {
+            int x = i % awt.columns * awt.tile;
+            int y = i / awt.columns * awt.tile;
+            blackhole.consume(atl.atlas.add(awt.image, x, y, awt.tile, awt.tile));
+        }
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the results of a JMH run from the files written by the runner. The
+ * format is chosen by the file extension:
+ * <ul>
+ * <li><i>.txt</i> is the text format of the {@code -rf text} option, with
+ * the score and error of each method.</li>
+ * <li><i>.log</i> is the human-readable output of the {@code -o} option,
+ * which ends with the same table and adds the score of every measurement
+ * iteration.</li>
+ * <li><i>.json</i> is the JSON format of the {@code -rf json} option, which
+ * also includes the score of every measurement iteration.</li>
+ * </ul>
+ *
+ * @author John Neffenger
+ */
+final class ResultParser {
+
+    private static final Pattern BENCHMARK = Pattern.compile("^# Benchmark: (\\S+)$");
+    private static final Pattern PARAMETERS = Pattern.compile("^# Parameters: \\((.*)\\)$");
+    private static final Pattern ITERATION = Pattern.compile("^Iteration\\s+\\d+:\\s+(\\S+)\\s+\\S+$");
+    private static final Pattern APPROXIMATE = Pattern.compile("10([⁻]?)([⁰¹²³⁴⁵⁶⁷⁸⁹]+)");
+    private static final String SUPERSCRIPTS = "⁰¹²³⁴⁵⁶⁷⁸⁹";
+
+    private ResultParser() {
+    }
+
+    /**
+     * Gets the name of the run of a result file from its base name.
+     *
+     * @param file the result file
+     * @return the file name without its extension
+     */
+    static String getRun(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot == -1 ? name : name.substring(0, dot);
+    }
+
+    /**
+     * Parses the results in a file.
+     *
+     * @param file the result file in text, log or JSON format
+     * @param run the name of the run
+     * @return the results in the file
+     * @throws IOException if an error occurs reading the file or the file is
+     * not in a supported format
+     */
+    static List<BenchmarkResult> parse(Path file, String run) throws IOException {
+        String name = file.getFileName().toString();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (name.endsWith(".txt")) {
+            return parseTable(lines, run, Map.of());
+        } else if (name.endsWith(".log")) {
+            return parseTable(lines, run, parseSamples(lines));
+        } else if (name.endsWith(".json")) {
+            return parseJson(String.join("\n", lines), run);
+        }
+        throw new IOException("Unsupported result file: " + file);
+    }
+
+    /**
+     * Shortens the fully-qualified name of a benchmark to its class and
+     * method, the way the JMH text format usually prints it.
+     */
+    private static String shortName(String name) {
+        int colon = name.indexOf(':');
+        String method = colon == -1 ? name : name.substring(0, colon);
+        String suffix = colon == -1 ? "" : name.substring(colon);
+        int last = method.lastIndexOf('.');
+        int start = last == -1 ? 0 : method.lastIndexOf('.', last - 1) + 1;
+        return method.substring(start) + suffix;
+    }
+
+    /**
+     * Joins the parameters in the order of their keys.
+     */
+    private static String joinParams(Map<String, String> params) {
+        var builder = new StringBuilder();
+        for (Map.Entry<String, String> entry : new TreeMap<>(params).entrySet()) {
+            builder.append(builder.length() == 0 ? "" : ",").append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Parses a number as printed by JMH, which writes very small values
+     * approximately, as in {@code ≈ 10⁻⁴}.
+     */
+    private static double parseNumber(String value) {
+        if (value.equals("NaN")) {
+            return Double.NaN;
+        }
+        Matcher m = APPROXIMATE.matcher(value);
+        if (m.matches()) {
+            int exponent = 0;
+            for (char c : m.group(2).toCharArray()) {
+                exponent = exponent * 10 + SUPERSCRIPTS.indexOf(c);
+            }
+            return Math.pow(10, m.group(1).isEmpty() ? exponent : -exponent);
+        }
+        return Double.parseDouble(value.replace(",", ""));
+    }
+
+    /**
+     * Collects the score of each measurement iteration in a log file, keyed
+     * by the short name of the benchmark and its parameters.
+     */
+    private static Map<String, List<Double>> parseSamples(List<String> lines) {
+        var samples = new HashMap<String, List<Double>>();
+        String benchmark = null;
+        String params = "";
+        for (String line : lines) {
+            Matcher m = BENCHMARK.matcher(line);
+            if (m.matches()) {
+                benchmark = shortName(m.group(1));
+                params = "";
+                continue;
+            }
+            m = PARAMETERS.matcher(line);
+            if (m.matches()) {
+                var map = new HashMap<String, String>();
+                for (String pair : m.group(1).split(", ")) {
+                    String[] kv = pair.split(" = ", 2);
+                    map.put(kv[0], kv.length > 1 ? kv[1] : "");
+                }
+                params = joinParams(map);
+                continue;
+            }
+            m = ITERATION.matcher(line);
+            if (m.matches() && benchmark != null) {
+                String key = benchmark + "|" + params;
+                samples.computeIfAbsent(key, k -> new ArrayList<>()).add(parseNumber(m.group(1)));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Parses the last result table in the lines of a text or log file and
+     * attaches the samples of each primary result when they match its number
+     * of iterations.
+     */
+    private static List<BenchmarkResult> parseTable(List<String> lines, String run,
+            Map<String, List<Double>> samples) throws IOException {
+        int header = -1;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.startsWith("Benchmark ") && line.contains(" Mode ")) {
+                header = i;
+            }
+        }
+        if (header == -1) {
+            throw new IOException("No result table in run " + run);
+        }
+        var keys = new ArrayList<String>();
+        for (String token : lines.get(header).trim().split("\\s+")) {
+            if (token.startsWith("(") && token.endsWith(")")) {
+                keys.add(token.substring(1, token.length() - 1));
+            }
+        }
+        var results = new ArrayList<BenchmarkResult>();
+        for (int i = header + 1; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty()) {
+                break;
+            }
+            String[] tokens = line.replace("≈ ", "").split("\\s+");
+            String benchmark = shortName(tokens[0]);
+            var map = new HashMap<String, String>();
+            for (int k = 0; k < keys.size(); k++) {
+                map.put(keys.get(k), tokens[1 + k]);
+            }
+            String params = joinParams(map);
+            String mode = tokens[1 + keys.size()];
+            int first = 2 + keys.size();
+            int last = tokens.length - 1;
+            String unit = tokens[last];
+            int plusMinus = line.contains("±") ? Arrays.asList(tokens).indexOf("±") : -1;
+            int scoreIndex = plusMinus == -1 ? last - 1 : plusMinus - 1;
+            double score = parseNumber(tokens[scoreIndex]);
+            double error = plusMinus == -1 ? Double.NaN : parseNumber(tokens[plusMinus + 1]);
+            long count = scoreIndex > first ? Long.parseLong(tokens[first]) : 1;
+            double[] values = null;
+            List<Double> list = samples.get(benchmark + "|" + params);
+            if (list != null && list.size() == count && benchmark.indexOf(':') == -1) {
+                values = list.stream().mapToDouble(Double::doubleValue).toArray();
+            }
+            results.add(new BenchmarkResult(run, benchmark, params, mode, count, score, error, unit, values));
+        }
+        return results;
+    }
+
+    /**
+     * Parses the results of a JMH JSON file.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<BenchmarkResult> parseJson(String text, String run) throws IOException {
+        var results = new ArrayList<BenchmarkResult>();
+        for (Object item : (List<Object>) new Json(text).parse()) {
+            var object = (Map<String, Object>) item;
+            String benchmark = shortName((String) object.get("benchmark"));
+            String mode = (String) object.get("mode");
+            var map = new HashMap<String, String>();
+            var params = (Map<String, Object>) object.get("params");
+            if (params != null) {
+                params.forEach((k, v) -> map.put(k, String.valueOf(v)));
+            }
+            String joined = joinParams(map);
+            results.add(toResult(run, benchmark, joined, mode, (Map<String, Object>) object.get("primaryMetric")));
+            var secondary = (Map<String, Object>) object.get("secondaryMetrics");
+            if (secondary != null) {
+                for (Map.Entry<String, Object> entry : secondary.entrySet()) {
+                    results.add(toResult(run, benchmark + ":" + entry.getKey(), joined, mode,
+                            (Map<String, Object>) entry.getValue()));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Converts one JSON metric to a result.
+     */
+    @SuppressWarnings("unchecked")
+    private static BenchmarkResult toResult(String run, String benchmark, String params, String mode,
+            Map<String, Object> metric) {
+        var values = new ArrayList<Double>();
+        var rawData = (List<Object>) metric.get("rawData");
+        if (rawData != null) {
+            for (Object fork : rawData) {
+                for (Object value : (List<Object>) fork) {
+                    values.add(toDouble(value));
+                }
+            }
+        }
+        double[] samples = values.isEmpty() ? null : values.stream().mapToDouble(Double::doubleValue).toArray();
+        return new BenchmarkResult(run, benchmark, params, mode, Math.max(1, values.size()),
+                toDouble(metric.get("score")), toDouble(metric.get("scoreError")),
+                (String) metric.get("scoreUnit"), samples);
+    }
+
+    /**
+     * Converts a JSON value to a number, including the strings that JMH
+     * writes for values that are not finite.
+     */
+    private static double toDouble(Object value) {
+        return value instanceof Double ? (Double) value : Double.parseDouble(String.valueOf(value));
+    }
+
+    /**
+     * A minimal JSON reader for the files written by JMH. Objects are read
+     * as maps, arrays as lists and numbers as doubles.
+     */
+    private static final class Json {
+
+        private final String text;
+        private int pos;
+
+        private Json(String text) {
+            this.text = text;
+        }
+
+        private Object parse() throws IOException {
+            Object value = value();
+            skip();
+            if (pos != text.length()) {
+                throw error();
+            }
+            return value;
+        }
+
+        private IOException error() {
+            return new IOException("Error parsing JSON at offset " + pos);
+        }
+
+        private void skip() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private boolean consume(char c) {
+            skip();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws IOException {
+            if (!consume(c)) {
+                throw error();
+            }
+        }
+
+        private Object value() throws IOException {
+            skip();
+            if (pos == text.length()) {
+                throw error();
+            }
+            char c = text.charAt(pos);
+            if (c == '{') {
+                pos++;
+                var map = new LinkedHashMap<String, Object>();
+                if (!consume('}')) {
+                    do {
+                        skip();
+                        String key = string();
+                        expect(':');
+                        map.put(key, value());
+                    } while (consume(','));
+                    expect('}');
+                }
+                return map;
+            } else if (c == '[') {
+                pos++;
+                var list = new ArrayList<Object>();
+                if (!consume(']')) {
+                    do {
+                        list.add(value());
+                    } while (consume(','));
+                    expect(']');
+                }
+                return list;
+            } else if (c == '"') {
+                return string();
+            } else if (text.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            } else if (text.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            } else if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            int start = pos;
+            while (pos < text.length() && "+-.0123456789eE".indexOf(text.charAt(pos)) != -1) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error();
+            }
+            return Double.parseDouble(text.substring(start, pos));
+        }
+
+        private String string() throws IOException {
+            if (pos == text.length() || text.charAt(pos) != '"') {
+                throw error();
+            }
+            pos++;
+            var builder = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return builder.toString();
+                } else if (c == '\\') {
+                    char e = text.charAt(pos++);
+                    switch (e) {
+                        case 'n':
+                            builder.append('\n');
+                            break;
+                        case 't':
+                            builder.append('\t');
+                            break;
+                        case 'r':
+                            builder.append('\r');
+                            break;
+                        case 'b':
+                            builder.append('\b');
+                            break;
+                        case 'f':
+                            builder.append('\f');
+                            break;
+                        case 'u':
+                            builder.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                            pos += 4;
+                            break;
+                        default:
+                            builder.append(e);
+                            break;
+                    }
+                } else {
+                    builder.append(c);
+                }
+            }
+            throw error();
+        }
+    }
+}
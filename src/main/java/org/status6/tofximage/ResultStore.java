@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the results of all benchmark runs in one tab-separated file, with
+ * one line for each result keyed by the run and the benchmark. The host, the
+ * operating system, the JDK and the date of each result are taken from the
+ * name of its run. Adding the results of a run again replaces them, except
+ * that a result with samples is never replaced by the same result without
+ * them, so the log and text files of a run can be added in any order.
+ *
+ * @author John Neffenger
+ */
+final class ResultStore {
+
+    private static final String HEADER = "Run\tBenchmark\tParams\tMode\tCnt\tScore\tError\tUnits\tSamples";
+    private static final String NONE = "-";
+
+    private final TreeMap<String, TreeMap<String, BenchmarkResult>> runs = new TreeMap<>();
+
+    /**
+     * Loads a store from a file.
+     *
+     * @param file the store file
+     * @return the store, which is empty if the file does not exist
+     * @throws IOException if an error occurs reading the file
+     */
+    static ResultStore load(Path file) throws IOException {
+        var store = new ResultStore();
+        if (!Files.exists(file)) {
+            return store;
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+            String[] f = line.split("\t");
+            if (f.length != 9) {
+                throw new IOException("Error parsing store line: " + line);
+            }
+            double[] samples = f[8].equals(NONE) ? null
+                    : Arrays.stream(f[8].split(",")).mapToDouble(Double::parseDouble).toArray();
+            store.put(new BenchmarkResult(f[0], f[1], f[2].equals(NONE) ? "" : f[2], f[3],
+                    Long.parseLong(f[4]), Double.parseDouble(f[5]), Double.parseDouble(f[6]), f[7], samples));
+        }
+        return store;
+    }
+
+    /**
+     * Saves the store to a file, sorted by run and benchmark.
+     *
+     * @param file the store file
+     * @throws IOException if an error occurs writing the file
+     */
+    void save(Path file) throws IOException {
+        var lines = new ArrayList<String>();
+        lines.add(HEADER);
+        for (Map<String, BenchmarkResult> results : runs.values()) {
+            for (BenchmarkResult r : results.values()) {
+                String samples = r.getSamples() == null ? NONE
+                        : Arrays.stream(r.getSamples()).mapToObj(Double::toString).collect(Collectors.joining(","));
+                lines.add(String.join("\t", r.getRun(), r.getBenchmark(),
+                        r.getParams().isEmpty() ? NONE : r.getParams(), r.getMode(),
+                        Long.toString(r.getCount()), Double.toString(r.getScore()),
+                        Double.toString(r.getError()), r.getUnit(), samples));
+            }
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Adds a result, replacing any previous result of the same benchmark in
+     * the same run unless only the previous one has samples.
+     *
+     * @param result the result to add
+     */
+    void put(BenchmarkResult result) {
+        var results = runs.computeIfAbsent(result.getRun(), k -> new TreeMap<>());
+        BenchmarkResult old = results.get(result.getKey());
+        if (old == null || old.getSamples() == null || result.getSamples() != null) {
+            results.put(result.getKey(), result);
+        }
+    }
+
+    /**
+     * Gets the names of the runs in the store.
+     *
+     * @return the run names in order
+     */
+    TreeSet<String> getRuns() {
+        return new TreeSet<>(runs.keySet());
+    }
+
+    /**
+     * Gets the results of a run.
+     *
+     * @param run the name of the run
+     * @return the results keyed by benchmark, or an empty map if the run is
+     * not in the store
+     */
+    Map<String, BenchmarkResult> getResults(String run) {
+        return runs.getOrDefault(run, new TreeMap<>());
+    }
+
+    /**
+     * Finds the latest run on the same host, operating system and JDK as the
+     * given run, but earlier than it.
+     *
+     * @param run the name of the run
+     * @return the name of the baseline run, or {@code null} if there is none
+     */
+    String findBaseline(String run) {
+        String prefix = run.substring(0, run.length() - "yyyy-mm-dd".length());
+        String baseline = null;
+        for (String name : runs.headMap(run, false).keySet()) {
+            if (name.startsWith(prefix) && name.length() == run.length()) {
+                baseline = name;
+            }
+        }
+        return baseline;
+    }
+}
@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Maintains the store of benchmark results in <i>logs/results.tsv</i>,
+ * creates the inputs of the bar charts in <i>images/chart.tex</i> from it,
+ * and checks a run for performance regressions against a baseline. The
+ * first argument is one of the following commands:
+ * <dl>
+ * <dt>{@code ingest FILE...}</dt>
+ * <dd>Adds the results in the JMH text, log or JSON files to the store. The
+ * name of each run is the base name of its file.</dd>
+ * <dt>{@code chart --run RUN [--dat FILE] [--tex FILE]}</dt>
+ * <dd>Writes the PGFPLOTS data of the run and, if the file does not yet
+ * exist, the chart source that sets its title and axis.</dd>
+ * <dt>{@code compare [--baseline RUN] [--threshold PERCENT]
+ * [--confidence LEVEL] CURRENT}</dt>
+ * <dd>Compares a run, given by name or by result file, against the baseline
+ * run, which is by default the latest earlier run on the same host and JDK.
+ * A method regresses when its score is worse by more than the threshold and
+ * its confidence interval no longer overlaps the baseline interval. Results
+ * with a single iteration have no interval and are judged by the threshold
+ * alone. The exit status is 1 if any method regresses.</dd>
+ * </dl>
+ * <p>
+ * Every command accepts the option {@code --store FILE} to use another
+ * store. Check the results of a new run with a command like the
+ * following:</p>
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -cp target/benchmarks.jar org.status6.tofximage.ResultTool \
+ *   compare --threshold 5 touchc-trusty-jdk-14.0.1_7-2020-06-12.log
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class ResultTool {
+
+    private static final String USAGE = String.join("\n",
+            "Usage: ResultTool ingest [--store FILE] FILE...",
+            "       ResultTool chart [--store FILE] --run RUN [--dat FILE] [--tex FILE]",
+            "       ResultTool compare [--store FILE] [--baseline RUN] [--threshold PERCENT]",
+            "                          [--confidence LEVEL] CURRENT");
+
+    private static final String DEFAULT_STORE = "logs/results.tsv";
+    private static final double DEFAULT_THRESHOLD = 5;
+    private static final double DEFAULT_CONFIDENCE = 0.99;
+
+    /**
+     * The class of the benchmarks drawn by the bar charts, whose name is
+     * removed from the data like the sed scripts in <i>images/Makefile</i>.
+     */
+    private static final String CHART_CLASS = "Benchmarks.";
+
+    private final Path store;
+    private final String run;
+    private final String baseline;
+    private final String dat;
+    private final String tex;
+    private final double threshold;
+    private final double confidence;
+    private final List<String> files;
+
+    /**
+     * Parses the options of a command.
+     */
+    private ResultTool(List<String> args) {
+        String storeArg = DEFAULT_STORE;
+        String runArg = null;
+        String baselineArg = null;
+        String datArg = null;
+        String texArg = null;
+        double thresholdArg = DEFAULT_THRESHOLD;
+        double confidenceArg = DEFAULT_CONFIDENCE;
+        files = new ArrayList<>();
+        for (int i = 0; i < args.size(); i++) {
+            String arg = args.get(i);
+            if (!arg.startsWith("--")) {
+                files.add(arg);
+                continue;
+            }
+            if (i + 1 == args.size()) {
+                throw new IllegalArgumentException("Missing value of option " + arg);
+            }
+            String value = args.get(++i);
+            switch (arg) {
+                case "--store":
+                    storeArg = value;
+                    break;
+                case "--run":
+                    runArg = value;
+                    break;
+                case "--baseline":
+                    baselineArg = value;
+                    break;
+                case "--dat":
+                    datArg = value;
+                    break;
+                case "--tex":
+                    texArg = value;
+                    break;
+                case "--threshold":
+                    thresholdArg = Double.parseDouble(value);
+                    break;
+                case "--confidence":
+                    confidenceArg = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (!(thresholdArg >= 0)) {
+            throw new IllegalArgumentException("Threshold must not be negative: " + thresholdArg);
+        }
+        if (!(confidenceArg > 0 && confidenceArg < 1)) {
+            throw new IllegalArgumentException("Confidence must be between 0 and 1: " + confidenceArg);
+        }
+        store = Paths.get(storeArg);
+        run = runArg;
+        baseline = baselineArg;
+        dat = datArg;
+        tex = texArg;
+        threshold = thresholdArg;
+        confidence = confidenceArg;
+    }
+
+    /**
+     * Adds the results in the files to the store.
+     */
+    private void ingest() throws IOException {
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No result files to ingest");
+        }
+        ResultStore results = ResultStore.load(store);
+        for (String name : files) {
+            Path file = Paths.get(name);
+            List<BenchmarkResult> list = ResultParser.parse(file, ResultParser.getRun(file));
+            list.forEach(results::put);
+            System.out.printf("%s: %d results%n", file, list.size());
+        }
+        results.save(store);
+    }
+
+    /**
+     * Writes the chart data and source of a run.
+     */
+    private void chart() throws IOException {
+        if (run == null) {
+            throw new IllegalArgumentException("No run to chart");
+        }
+        Map<String, BenchmarkResult> results = ResultStore.load(store).getResults(run);
+        if (results.isEmpty()) {
+            throw new IllegalArgumentException("No results of run " + run);
+        }
+        var keys = new TreeSet<String>();
+        for (BenchmarkResult r : results.values()) {
+            for (String pair : r.getParams().isEmpty() ? new String[0] : r.getParams().split(",")) {
+                keys.add(pair.substring(0, pair.indexOf('=')));
+            }
+        }
+        var lines = new ArrayList<String>();
+        var header = new StringBuilder("Benchmark");
+        keys.forEach(k -> header.append(" (").append(k).append(')'));
+        lines.add(header.append(" Mode Cnt Score x Error Units").toString());
+        double top = 0;
+        for (BenchmarkResult r : results.values()) {
+            if (!r.isPrimary()) {
+                continue;
+            }
+            String name = r.getBenchmark();
+            var line = new StringBuilder(name.startsWith(CHART_CLASS) ? name.substring(CHART_CLASS.length()) : name);
+            for (String key : keys) {
+                String value = "-";
+                for (String pair : r.getParams().isEmpty() ? new String[0] : r.getParams().split(",")) {
+                    if (pair.startsWith(key + "=")) {
+                        value = pair.substring(key.length() + 1);
+                    }
+                }
+                line.append(' ').append(value);
+            }
+            double error = Double.isFinite(r.getError()) ? r.getError() : 0;
+            line.append(' ').append(r.getMode()).append(' ').append(r.getCount())
+                    .append(' ').append(format(r.getScore())).append(" ± ").append(format(r.getError()))
+                    .append(' ').append(r.getUnit());
+            lines.add(line.toString());
+            if (name.startsWith(CHART_CLASS)) {
+                top = Math.max(top, r.getScore() + error);
+            }
+        }
+        if (dat != null) {
+            Files.write(Paths.get(dat), lines, StandardCharsets.UTF_8);
+        }
+        if (tex != null && !Files.exists(Paths.get(tex))) {
+            Files.write(Paths.get(tex), getSource(results.values().iterator().next(), top), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Formats a score for PGFPLOTS, which reads "nan" as a missing value.
+     */
+    private static String format(double value) {
+        return Double.isFinite(value) ? String.format("%.3f", value) : "nan";
+    }
+
+    /**
+     * Creates the chart source of a run, with the axis limit rounded up from
+     * the highest score and its tick distance a power of ten.
+     */
+    private static List<String> getSource(BenchmarkResult r, double top) {
+        double dist = 1;
+        while (top / dist > 12) {
+            dist *= 10;
+        }
+        double xmax = Math.max(dist, Math.ceil(top / (dist / 2)) * (dist / 2));
+        return List.of(
+                "\\newcommand{\\mytitle}{" + getJdkTitle(r.getJdk()) + " on " + getOsTitle(r.getOs()) + "}",
+                "\\newcommand{\\mysubtitle}{" + getHostTitle(r.getHost()) + "}",
+                "\\newcommand{\\xmax}{" + (long) xmax + "}",
+                "\\newcommand{\\dist}{" + (long) dist + "}",
+                "\\input{chart}");
+    }
+
+    /**
+     * Gets the title of a JDK from the name of its directory.
+     */
+    private static String getJdkTitle(String jdk) {
+        String version = jdk.replaceAll("^\\D*(\\d+).*$", "$1");
+        if (jdk.matches("java-\\d+-openjdk.*")) {
+            return "Ubuntu OpenJDK " + version;
+        } else if (jdk.matches("jdk-\\d+.*_.*")) {
+            return "AdoptOpenJDK " + version;
+        } else if (jdk.matches("jre-\\d+-full")) {
+            return "BellSoft Liberica Full JRE " + version;
+        } else if (jdk.matches("jdk-\\d+")) {
+            return "Oracle OpenJDK " + version;
+        }
+        return jdk;
+    }
+
+    /**
+     * Gets the title of an Ubuntu release from its code name.
+     */
+    private static String getOsTitle(String os) {
+        switch (os) {
+            case "trusty":
+                return "Ubuntu 14.04";
+            case "xenial":
+                return "Ubuntu 16.04";
+            case "bionic":
+                return "Ubuntu 18.04";
+            case "focal":
+                return "Ubuntu 20.04";
+            default:
+                return os;
+        }
+    }
+
+    /**
+     * Gets the subtitle command in <i>chart.tex</i> that describes a host.
+     */
+    private static String getHostTitle(String host) {
+        if (host.equals("focal")) {
+            return "\\intel";
+        } else if (host.startsWith("lampone")) {
+            return "\\raspi";
+        } else if (host.startsWith("clarahd")) {
+            return "\\clara";
+        } else if (host.startsWith("glohd")) {
+            return "\\glohd";
+        } else if (host.startsWith("touch")) {
+            return "\\touch";
+        }
+        return host;
+    }
+
+    /**
+     * Compares a run against its baseline and returns the number of methods
+     * that regressed.
+     */
+    private int compare() throws IOException {
+        if (files.size() != 1) {
+            throw new IllegalArgumentException("Compare needs exactly one run or result file");
+        }
+        ResultStore results = ResultStore.load(store);
+        String current = files.get(0);
+        Path file = Paths.get(current);
+        if (Files.isRegularFile(file)) {
+            current = ResultParser.getRun(file);
+            for (BenchmarkResult r : ResultParser.parse(file, current)) {
+                results.put(r);
+            }
+        }
+        String base = baseline != null ? baseline : results.findBaseline(current);
+        if (base == null) {
+            throw new IllegalArgumentException("No baseline for run " + current);
+        }
+        Map<String, BenchmarkResult> before = results.getResults(base);
+        Map<String, BenchmarkResult> after = results.getResults(current);
+        if (before.isEmpty() || after.isEmpty()) {
+            throw new IllegalArgumentException("No results of run " + (before.isEmpty() ? base : current));
+        }
+        System.out.printf("Baseline %s%nCurrent  %s%n%n", base, current);
+        System.out.printf("%-60s %12s %12s %8s  %s%n", "Benchmark", "Baseline", "Current", "Change", "Status");
+        int regressions = 0;
+        for (BenchmarkResult now : after.values()) {
+            BenchmarkResult was = before.get(now.getKey());
+            if (!now.isPrimary() || was == null || !was.getMode().equals(now.getMode())) {
+                continue;
+            }
+            double change = 100 * (now.getScore() - was.getScore()) / was.getScore();
+            double worse = now.isHigherBetter() ? -change : change;
+            double[] a = was.getInterval(confidence);
+            double[] b = now.getInterval(confidence);
+            boolean separate = a == null || b == null
+                    || (now.isHigherBetter() ? b[1] < a[0] : b[0] > a[1]);
+            String status = "ok";
+            if (worse > threshold && separate) {
+                status = "REGRESSION";
+                regressions++;
+            } else if (-worse > threshold && separate) {
+                status = "improved";
+            } else if (Math.abs(change) > threshold) {
+                status = "within interval";
+            }
+            System.out.printf("%-60s %12.3f %12.3f %+7.1f%%  %s%n",
+                    now.getKey(), was.getScore(), now.getScore(), change, status);
+        }
+        System.out.printf("%n%d regressions beyond %.1f%% at %.1f%% confidence%n",
+                regressions, threshold, confidence * 100);
+        return regressions;
+    }
+
+    /**
+     * Runs a command of the tool.
+     *
+     * @param args the command and its options
+     * @throws IOException if an error occurs reading or writing a file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            var tool = new ResultTool(List.of(args).subList(1, args.length));
+            switch (args[0]) {
+                case "ingest":
+                    tool.ingest();
+                    break;
+                case "chart":
+                    tool.chart();
+                    break;
+                case "compare":
+                    if (tool.compare() > 0) {
+                        System.exit(1);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command " + args[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+}
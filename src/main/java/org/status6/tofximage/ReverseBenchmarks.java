@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the performance of methods for converting a JavaFX image back to an
+ * AWT image. Run a quick test of only these benchmarks with a command like the
+ * following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar ReverseBenchmarks -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class ReverseBenchmarks {
+
+    /**
+     * The file name of the image used to create the source JavaFX image.
+     */
+    private static final String FILE_NAME = "doll-dancing.gif";
+
+    /**
+     * Loads the first frame of the GIF image file.
+     *
+     * @return the first frame as an AWT image
+     * @throws IOException if an error occurs reading the file
+     */
+    private static BufferedImage loadImage() throws IOException {
+        var input = ReverseBenchmarks.class.getResource("/" + FILE_NAME);
+        if (input == null) {
+            throw new IOException("Error loading image");
+        }
+        return ImageIO.read(input);
+    }
+
+    /**
+     * Gets the pixels of the AWT image in INT_ARGB_PRE format.
+     *
+     * @param awtImage the AWT image
+     * @return an array of the premultiplied pixels
+     */
+    private static int[] getArgbPre(BufferedImage awtImage) {
+        int width = awtImage.getWidth();
+        int height = awtImage.getHeight();
+        int[] array = awtImage.getRGB(0, 0, width, height, null, 0, width);
+        AlphaConverter.premultiply(array, 0, array, 0, array.length);
+        return array;
+    }
+
+    /**
+     * Gets the AWT image type constant for the name of the type without its
+     * {@code TYPE_} prefix.
+     *
+     * @param name the name of the AWT image type, such as {@code INT_RGB}
+     * @return the AWT image type
+     * @throws IllegalArgumentException if the name is not a supported type
+     */
+    private static int getAwtType(String name) {
+        switch (name) {
+            case "INT_RGB":
+                return BufferedImage.TYPE_INT_RGB;
+            case "INT_BGR":
+                return BufferedImage.TYPE_INT_BGR;
+            case "INT_ARGB":
+                return BufferedImage.TYPE_INT_ARGB;
+            case "INT_ARGB_PRE":
+                return BufferedImage.TYPE_INT_ARGB_PRE;
+            default:
+                throw new IllegalArgumentException("Unsupported image type: " + name);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SourceJfxImage {
+
+        /**
+         * The pixel format of the source JavaFX image. JavaFX has no platform
+         * image in the INT_ARGB format, so its images are read in one of
+         * these three formats.
+         */
+        @Param({"BYTE_BGRA_PRE", "INT_ARGB_PRE", "BYTE_RGB"})
+        public String format;
+
+        private Image image;
+        private int width;
+        private int height;
+
+        @Setup
+        public void doSetup() throws IOException {
+            BufferedImage frame = loadImage();
+            width = frame.getWidth();
+            height = frame.getHeight();
+            switch (format) {
+                case "BYTE_BGRA_PRE":
+                    // Creates an image like the snapshot of a scene.
+                    image = SwingFXUtils.toFXImage(frame, null);
+                    break;
+                case "INT_ARGB_PRE":
+                    var buffer = IntBuffer.wrap(getArgbPre(frame));
+                    var pixels = new PixelBuffer<>(width, height, buffer, PixelFormat.getIntArgbPreInstance());
+                    image = new WritableImage(pixels);
+                    break;
+                case "BYTE_RGB":
+                    // Creates an image like one loaded from an opaque PNG file.
+                    var rgb = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                    var graphics = rgb.createGraphics();
+                    graphics.drawImage(frame, 0, 0, null);
+                    graphics.dispose();
+                    var output = new ByteArrayOutputStream();
+                    ImageIO.write(rgb, "png", output);
+                    image = new Image(new ByteArrayInputStream(output.toByteArray()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported pixel format: " + format);
+            }
+            if (image.getPixelReader().getPixelFormat().getType() != PixelFormat.Type.valueOf(format)) {
+                throw new IllegalStateException("Wrong pixel format: " + image.getPixelReader().getPixelFormat());
+            }
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SourcePixelBuffer {
+
+        @Param({"BYTE_BGRA_PRE", "INT_ARGB_PRE"})
+        public String format;
+
+        private PixelBuffer<?> pixels;
+        private IntBuffer view;
+        private int width;
+        private int height;
+
+        @Setup
+        public void doSetup() throws IOException {
+            BufferedImage frame = loadImage();
+            width = frame.getWidth();
+            height = frame.getHeight();
+            int[] array = getArgbPre(frame);
+            switch (format) {
+                case "BYTE_BGRA_PRE":
+                    var bytes = ByteBuffer.allocateDirect(array.length * Integer.BYTES);
+                    bytes.order(ByteOrder.LITTLE_ENDIAN);
+                    bytes.asIntBuffer().put(array);
+                    pixels = new PixelBuffer<>(width, height, bytes, PixelFormat.getByteBgraPreInstance());
+                    // Reads each little-endian BGRA pixel as one ARGB integer.
+                    view = bytes.asIntBuffer();
+                    break;
+                case "INT_ARGB_PRE":
+                    var ints = IntBuffer.wrap(array);
+                    pixels = new PixelBuffer<>(width, height, ints, PixelFormat.getIntArgbPreInstance());
+                    view = ints.duplicate();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported pixel format: " + format);
+            }
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetArgbPreImage {
+
+        private BufferedImage image;
+        private int[] data;
+
+        @Setup
+        public void doSetup() throws IOException {
+            BufferedImage frame = loadImage();
+            image = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+            data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        @TearDown
+        public void doTearDown() {
+            image.flush();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetAwtImage {
+
+        /**
+         * The type of the target AWT image. Targets without an alpha channel
+         * make {@code fromFXImage} first check that the source is opaque.
+         */
+        @Param({"INT_RGB", "INT_ARGB_PRE"})
+        public String type;
+
+        private BufferedImage image;
+
+        @Setup
+        public void doSetup(SourceJfxImage jfx) {
+            image = new BufferedImage(jfx.width, jfx.height, getAwtType(type));
+        }
+
+        @TearDown
+        public void doTearDown() {
+            image.flush();
+        }
+    }
+
+    /**
+     * Converts the JavaFX image into an AWT image using the public JavaFX
+     * utility method {@link SwingFXUtils#fromFXImage}, reusing the target AWT
+     * image (correct).
+     *
+     * @param jfx the source JavaFX image
+     * @param awt the target AWT image
+     * @param blackhole used to consume the output of the utility method
+     */
+    @Benchmark
+    public void fromFXImage(SourceJfxImage jfx, TargetAwtImage awt, Blackhole blackhole) {
+        blackhole.consume(SwingFXUtils.fromFXImage(jfx.image, awt.image));
+    }
+
+    /**
+     * Converts the JavaFX image into a new AWT image using the public JavaFX
+     * utility method {@link SwingFXUtils#fromFXImage}, which chooses the best
+     * type for the new image and allocates it on every call (correct).
+     *
+     * @param jfx the source JavaFX image
+     * @param blackhole used to consume the output of the utility method
+     */
+    @Benchmark
+    public void fromFXImageNew(SourceJfxImage jfx, Blackhole blackhole) {
+        blackhole.consume(SwingFXUtils.fromFXImage(jfx.image, null));
+    }
+
+    /**
+     * Reads the pixels of the JavaFX image in bulk using its
+     * {@code PixelReader} directly into the data buffer of a reused AWT image.
+     * This method copies pixels as INT_ARGB_PRE pixels (correct).
+     *
+     * @param jfx the source JavaFX image
+     * @param awt the target AWT image in INT_ARGB_PRE pixel format
+     */
+    @Benchmark
+    public void getPixelsIntoInts(SourceJfxImage jfx, TargetArgbPreImage awt) {
+        jfx.image.getPixelReader().getPixels(0, 0, jfx.width, jfx.height,
+                PixelFormat.getIntArgbPreInstance(), awt.data, 0, jfx.width);
+    }
+
+    /**
+     * Reads the pixels of a JavaFX image directly from the buffer of its
+     * {@code PixelBuffer} into the data buffer of a reused AWT image. This
+     * method copies BYTE_BGRA_PRE pixels from a byte buffer with
+     * little-endian byte order, or INT_ARGB_PRE pixels from an integer
+     * buffer, as INT_ARGB_PRE pixels (correct).
+     *
+     * @param jfx the source {@code PixelBuffer}
+     * @param awt the target AWT image in INT_ARGB_PRE pixel format
+     */
+    @Benchmark
+    public void getBufferIntoInts(SourcePixelBuffer jfx, TargetArgbPreImage awt) {
+        jfx.view.clear();
+        jfx.view.get(awt.data, 0, jfx.width * jfx.height);
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.IntBuffer;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the conversion of a large AWT image to a smaller JavaFX image in
+ * one pass with an {@link ImageScaler} against two-step approaches that scale
+ * the image with Java 2D into an intermediate AWT image and then copy it to
+ * the JavaFX image. The baseline converts the image at full resolution and
+ * leaves the scaling to the {@code ImageView} that displays it. Run a quick
+ * test of only these benchmarks with a command like the following:
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar ScaledBenchmarks -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+public class ScaledBenchmarks {
+
+    @State(Scope.Thread)
+    public static class SourceAwtImage {
+
+        @Param({"3840x2160"})
+        public String size;
+
+        @Param({"OPAQUE", "TRANSLUCENT"})
+        public String content;
+
+        private BufferedImage image;
+        private int width;
+        private int height;
+
+        @Setup
+        public void doSetup() {
+            String[] values = size.split("x");
+            width = Integer.parseInt(values[0]);
+            height = Integer.parseInt(values[1]);
+            image = SyntheticFrames.create(width, height, SyntheticFrames.Content.valueOf(content), 0);
+        }
+
+        @TearDown
+        public void doTearDown() {
+            image.flush();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetSize {
+
+        @Param({"1920x1080", "1280x720"})
+        public String target;
+
+        private int width;
+        private int height;
+
+        @Setup
+        public void doSetup() {
+            String[] values = target.split("x");
+            width = Integer.parseInt(values[0]);
+            height = Integer.parseInt(values[1]);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Scaler {
+
+        @Param({"BOX", "BILINEAR"})
+        public ImageScaler.Filter filter;
+
+        private ImageScaler scaler;
+
+        @Setup
+        public void doSetup() {
+            scaler = new ImageScaler(filter);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetJfxImage {
+
+        private WritableImage image;
+
+        @Setup
+        public void doSetup(TargetSize size) {
+            image = new WritableImage(size.width, size.height);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FullJfxImage {
+
+        private WritableImage image;
+
+        @Setup
+        public void doSetup(SourceAwtImage awt) {
+            image = new WritableImage(awt.width, awt.height);
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TargetIntBuffer {
+
+        private IntBuffer buffer;
+        private PixelBuffer<IntBuffer> pixels;
+
+        @Setup
+        public void doSetup(TargetSize size) {
+            buffer = IntBuffer.allocate(size.width * size.height);
+            pixels = new PixelBuffer<>(size.width, size.height, buffer, PixelFormat.getIntArgbPreInstance());
+        }
+
+        @TearDown
+        public void doTearDown() {
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TempAwtImage {
+
+        private BufferedImage image;
+        private int[] array;
+
+        @Setup
+        public void doSetup(TargetSize size) {
+            image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB_PRE);
+            array = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        @TearDown
+        public void doTearDown() {
+            image.flush();
+        }
+    }
+
+    /**
+     * Draws the source AWT image scaled into the intermediate AWT image with
+     * bilinear interpolation, replacing its previous contents.
+     */
+    private static void drawScaled(SourceAwtImage awt, TempAwtImage tmp) {
+        Graphics2D graphics = tmp.image.createGraphics();
+        graphics.setComposite(AlphaComposite.Src);
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(awt.image, 0, 0, tmp.image.getWidth(), tmp.image.getHeight(), null);
+        graphics.dispose();
+    }
+
+    /**
+     * Converts the source AWT image at full resolution with
+     * {@link SwingFXUtils#toFXImage SwingFXUtils.toFXImage}, then passes it
+     * to an {@code ImageView} whose fit size is the target size. The view
+     * scales the image each time it is rendered, so the score leaves out the
+     * scaling itself and the upload of the full-resolution texture (lower
+     * bound).
+     *
+     * @param awt the source AWT image
+     * @param full the JavaFX image of the source size
+     * @param size the target size
+     * @param blackhole used to simulate a call to {@code ImageView.setImage}
+     */
+    @Benchmark
+    public void toFXImageThenFit(SourceAwtImage awt, FullJfxImage full, TargetSize size, Blackhole blackhole) {
+        SwingFXUtils.toFXImage(awt.image, full.image);
+        // Simulates ImageView.setImage with fitWidth and fitHeight on JavaFX Application Thread
+        blackhole.consume(full.image);
+        blackhole.consume(new Rectangle2D(0, 0, size.width, size.height));
+    }
+
+    /**
+     * Scales the source AWT image with Java 2D into an intermediate AWT image
+     * of type {@code TYPE_INT_ARGB_PRE}; then writes its pixels to the JavaFX
+     * image using a {@code PixelWriter}. This method copies pixels in the
+     * INT_ARGB_PRE format as INT_ARGB_PRE pixels (correct).
+     *
+     * @param awt the source AWT image
+     * @param tmp the intermediate AWT image of the target size
+     * @param jfx the target JavaFX image
+     */
+    @Benchmark
+    public void drawThenSetAsArgbPre(SourceAwtImage awt, TempAwtImage tmp, TargetJfxImage jfx) {
+        drawScaled(awt, tmp);
+        int width = tmp.image.getWidth();
+        int height = tmp.image.getHeight();
+        jfx.image.getPixelWriter().setPixels(0, 0, width, height,
+                PixelFormat.getIntArgbPreInstance(), tmp.array, 0, width);
+    }
+
+    /**
+     * Scales the source AWT image with Java 2D into an intermediate AWT image
+     * of type {@code TYPE_INT_ARGB_PRE}; then copies its pixels into the
+     * integer buffer of a {@code PixelBuffer}. This method copies pixels in
+     * the INT_ARGB_PRE format as INT_ARGB_PRE pixels (correct).
+     *
+     * @param awt the source AWT image
+     * @param tmp the intermediate AWT image of the target size
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void drawThenPutIntoInts(SourceAwtImage awt, TempAwtImage tmp, TargetIntBuffer jfx, Blackhole blackhole) {
+        drawScaled(awt, tmp);
+        System.arraycopy(tmp.array, 0, jfx.buffer.array(), 0, tmp.array.length);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, jfx.pixels.getWidth(), jfx.pixels.getHeight()));
+    }
+
+    /**
+     * Scales the source AWT image while reading its pixels and writes each
+     * scaled row to the JavaFX image using a {@code PixelWriter}. This method
+     * copies pixels in the INT_ARGB format as INT_ARGB_PRE pixels (correct).
+     *
+     * @param awt the source AWT image
+     * @param scl the one-pass image scaler
+     * @param jfx the target JavaFX image
+     */
+    @Benchmark
+    public void scaleThenSetAsArgbPre(SourceAwtImage awt, Scaler scl, TargetJfxImage jfx) {
+        scl.scaler.toFXImage(awt.image, (int) jfx.image.getWidth(), (int) jfx.image.getHeight(), jfx.image);
+    }
+
+    /**
+     * Scales the source AWT image while reading its pixels and writes the
+     * results directly into the integer buffer of a {@code PixelBuffer}. This
+     * method copies pixels in the INT_ARGB format as INT_ARGB_PRE pixels
+     * (correct).
+     *
+     * @param awt the source AWT image
+     * @param scl the one-pass image scaler
+     * @param jfx the target {@code PixelBuffer<IntBuffer>} in INT_ARGB_PRE
+     * pixel format
+     * @param blackhole used to simulate a call to
+     * {@code PixelBuffer.updateBuffer}
+     */
+    @Benchmark
+    public void scaleIntoInts(SourceAwtImage awt, Scaler scl, TargetIntBuffer jfx, Blackhole blackhole) {
+        int width = jfx.pixels.getWidth();
+        int height = jfx.pixels.getHeight();
+        scl.scaler.scale(awt.image, width, height, jfx.buffer);
+        // Simulates PixelBuffer.updateBuffer on JavaFX Application Thread
+        blackhole.consume(new Rectangle2D(0, 0, width, height));
+    }
+}
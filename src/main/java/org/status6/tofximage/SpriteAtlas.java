@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Packs many small AWT images into one JavaFX image. The images are placed
+ * left to right in shelves as tall as the tallest image on each shelf, and
+ * each one is copied directly into its place with the region variant of
+ * {@link SwingFXUtils#toFXImage SwingFXUtils.toFXImage}, so no intermediate
+ * JavaFX image is created for any of them. The pixels between the images are
+ * left transparent. An atlas is not thread-safe.
+ *
+ * @author John Neffenger
+ */
+public final class SpriteAtlas {
+
+    private final WritableImage image;
+    private final int padding;
+
+    private int x;
+    private int y;
+    private int shelf;
+
+    /**
+     * Creates an empty atlas.
+     *
+     * @param width the width of the atlas in pixels
+     * @param height the height of the atlas in pixels
+     * @param padding the number of transparent pixels between the images
+     * @throws IllegalArgumentException if the size is not positive or the
+     * padding is negative
+     */
+    public SpriteAtlas(int width, int height, int padding) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Atlas size must be positive: " + width + "x" + height);
+        }
+        if (padding < 0) {
+            throw new IllegalArgumentException("Padding must not be negative: " + padding);
+        }
+        this.image = new WritableImage(width, height);
+        this.padding = padding;
+    }
+
+    /**
+     * Gets the JavaFX image holding the packed images.
+     *
+     * @return the atlas image
+     */
+    public WritableImage getImage() {
+        return image;
+    }
+
+    /**
+     * Starts packing again from the top left corner of the atlas. The pixels
+     * of the images already packed are overwritten by later images but are
+     * not cleared.
+     */
+    public void reset() {
+        x = 0;
+        y = 0;
+        shelf = 0;
+    }
+
+    /**
+     * Adds an AWT image to the atlas.
+     *
+     * @param bimg the AWT image
+     * @return the location of the image in the atlas, or {@code null} if
+     * there is no room left for it
+     */
+    public Rectangle2D add(BufferedImage bimg) {
+        return add(bimg, 0, 0, bimg.getWidth(), bimg.getHeight());
+    }
+
+    /**
+     * Adds a region of an AWT image to the atlas, such as one sprite of a
+     * larger sheet.
+     *
+     * @param bimg the AWT image
+     * @param sx the X coordinate of the region in the AWT image
+     * @param sy the Y coordinate of the region in the AWT image
+     * @param sw the width of the region
+     * @param sh the height of the region
+     * @return the location of the region in the atlas, or {@code null} if
+     * there is no room left for it
+     * @throws IndexOutOfBoundsException if the region is not inside the AWT
+     * image
+     */
+    public Rectangle2D add(BufferedImage bimg, int sx, int sy, int sw, int sh) {
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        int left = x;
+        int top = y;
+        int tallest = shelf;
+        if (left + sw > width) {
+            left = 0;
+            top += shelf + padding;
+            tallest = 0;
+        }
+        // Leaves the current shelf open if the region does not fit.
+        if (sw > width || top + sh > height) {
+            return null;
+        }
+        SwingFXUtils.toFXImage(bimg, sx, sy, sw, sh, image, left, top);
+        x = left + sw + padding;
+        y = top;
+        shelf = Math.max(tallest, sh);
+        return new Rectangle2D(left, top, sw, sh);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * Reports the results recorded by the states of a benchmark as secondary
+ * results of each iteration. Auxiliary counters are added up over the
+ * iterations and forks, which suits counts but not levels such as a maximum
+ * latency. A state instead records such a result in its iteration teardown,
+ * with the policy that combines it over the iterations and forks, and the
+ * result is then saved with the other results of the run. The
+ * {@link BenchmarkRunner} always includes this profiler; add it to other runs
+ * with the option {@code -prof org.status6.tofximage.StateProfiler}.
+ *
+ * @author John Neffenger
+ */
+public class StateProfiler implements InternalProfiler {
+
+    private static final List<ScalarResult> RESULTS = new ArrayList<>();
+
+    /**
+     * Records a result of the current iteration. Results recorded without
+     * this profiler are discarded at the start of the next iteration.
+     *
+     * @param label the label of the result
+     * @param value the value of the result
+     * @param unit the unit of the value
+     * @param policy the policy that combines the values of the iterations
+     */
+    public static void record(String label, double value, String unit, AggregationPolicy policy) {
+        synchronized (RESULTS) {
+            RESULTS.add(new ScalarResult(label, value, unit, policy));
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Results recorded by the benchmark states";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        synchronized (RESULTS) {
+            RESULTS.clear();
+        }
+    }
+
+    @Override
+    public Collection<ScalarResult> afterIteration(BenchmarkParams benchmarkParams,
+            IterationParams iterationParams, IterationResult result) {
+        synchronized (RESULTS) {
+            var results = new ArrayList<>(RESULTS);
+            RESULTS.clear();
+            return results;
+        }
+    }
+}
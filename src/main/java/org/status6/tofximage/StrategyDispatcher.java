@@ -0,0 +1,766 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Converts AWT images to JavaFX images with whichever correct strategy is
+ * fastest on the running JDK and hardware. The ranking of the methods in
+ * {@link Benchmarks} changes between JDK versions and between architectures,
+ * so the first conversion for each combination of source image type, target
+ * format and size class times every correct strategy on the image being
+ * converted and keeps the fastest. Each strategy is first run untimed for a
+ * warm-up time, so that it is timed in compiled rather than interpreted code.
+ * The choices are saved to a properties file together with the Java version
+ * and architecture, so later runs on the same platform skip the calibration;
+ * the file is ignored on any other platform, or when the system property
+ * {@value #RECALIBRATE} is {@code true}.
+ * <p>
+ * A dispatcher is not thread-safe. Use one dispatcher per converting
+ * thread.</p>
+ *
+ * @author John Neffenger
+ */
+public class StrategyDispatcher {
+
+    /**
+     * The default time in milliseconds of the untimed conversions of each
+     * strategy.
+     */
+    public static final long DEFAULT_WARMUP = 200;
+
+    /**
+     * The default number of timed conversions of each strategy.
+     */
+    public static final int DEFAULT_RUNS = 10;
+
+    /**
+     * The system property that, when {@code true}, ignores the saved choices
+     * so that every choice is calibrated again and saved anew.
+     */
+    public static final String RECALIBRATE = "org.status6.tofximage.recalibrate";
+
+    private static final String JAVA_VERSION = "java.version";
+    private static final String OS_ARCH = "os.arch";
+
+    /**
+     * The kinds of conversion targets.
+     */
+    public enum Target {
+        /**
+         * A JavaFX image written through its {@code PixelWriter}.
+         */
+        IMAGE,
+        /**
+         * The integer buffer of a {@code PixelBuffer} in INT_ARGB_PRE format.
+         */
+        INT_BUFFER,
+        /**
+         * The byte buffer of a {@code PixelBuffer} in BYTE_BGRA_PRE format.
+         */
+        BYTE_BUFFER
+    }
+
+    /**
+     * The size classes of source images, by number of pixels.
+     */
+    public enum SizeClass {
+        /**
+         * Up to 256 &times; 256 pixels, such as icons and thumbnails.
+         */
+        SMALL,
+        /**
+         * Up to 1920 &times; 1080 pixels.
+         */
+        MEDIUM,
+        /**
+         * More than 1920 &times; 1080 pixels.
+         */
+        LARGE;
+
+        /**
+         * Gets the size class of an image.
+         *
+         * @param image the AWT image
+         * @return its size class
+         */
+        public static SizeClass of(BufferedImage image) {
+            long pixels = (long) image.getWidth() * image.getHeight();
+            return pixels <= 256 * 256 ? SMALL : pixels <= 1920 * 1080 ? MEDIUM : LARGE;
+        }
+    }
+
+    /**
+     * The correct conversion strategies, named like the benchmark methods in
+     * {@link Benchmarks} that measure them.
+     */
+    public enum Strategy {
+        /**
+         * Calls {@link SwingFXUtils#toFXImage SwingFXUtils.toFXImage}.
+         */
+        TO_FX_IMAGE(Target.IMAGE) {
+            @Override
+            void convert(BufferedImage image, Workspace w) {
+                SwingFXUtils.toFXImage(image, w.image);
+            }
+        },
+        /**
+         * Calls {@link ConversionContext#toFXImage} with pooled intermediate
+         * images.
+         */
+        CONTEXT_TO_FX_IMAGE(Target.IMAGE) {
+            @Override
+            void convert(BufferedImage image, Workspace w) {
+                w.getContext().toFXImage(image, w.image);
+            }
+        },
+        /**
+         * Draws into an intermediate INT_ARGB image and writes it as INT_ARGB
+         * pixels.
+         */
+        SET_ARGB_AS_ARGB(Target.IMAGE) {
+            @Override
+            void convert(BufferedImage image, Workspace w) {
+                int[] data = w.draw(image, BufferedImage.TYPE_INT_ARGB);
+                w.image.getPixelWriter().setPixels(0, 0, image.getWidth(), image.getHeight(),
+                        PixelFormat.getIntArgbInstance(), data, 0, image.getWidth());
+            }
+        },
+        /**
+         * Draws into an intermediate INT_ARGB_PRE image and writes it as
+         * INT_ARGB_PRE pixels.
+         */
+        SET_ARGB_PRE_AS_ARGB_PRE(Target.IMAGE) {
+            @Override
+            void convert(BufferedImage image, Workspace w) {
+                int[] data = w.draw(image, BufferedImage.TYPE_INT_ARGB_PRE);
+                w.image.getPixelWriter().setPixels(0, 0, image.getWidth(), image.getHeight(),
+                        PixelFormat.getIntArgbPreInstance(), data, 0, image.getWidth());
+            }
+        },
+        /**
+         * Gets the pixels into an intermediate array and writes them as
+         * INT_ARGB pixels.
+         */
+        SET_ARRAY_AS_ARGB(Target.IMAGE) {
+            @Override
+            void convert(BufferedImage image, Workspace w) {
+                int width = image.getWidth();
+                int height = image.getHeight();
+                int[] array = w.getArray(width * height);
+                image.getRGB(0, 0, width, height, array, 0, width);
+                w.image.getPixelWriter().setPixels(0, 0, width, height,
+                        PixelFormat.getIntArgbInstance(), array, 0, width);
+            }
+        },
+        /**
+         * Gets the pixels into an intermediate array by the path for their
+         * alpha class and writes them as INT_ARGB_PRE pixels.
+         */
+        SET_CLASSIFIED_AS_ARGB_PRE(Target.IMAGE) {
+            @Override
+            void convert(BufferedImage image, Workspace w) {
+                int width = image.getWidth();
+                int height = image.getHeight();
+                int[] array = w.getArray(width * height);
+                w.getClassified(image, array, 0, width);
+                w.image.getPixelWriter().setPixels(0, 0, width, height,
+                        PixelFormat.getIntArgbPreInstance(), array, 0, width);
+            }
+        },
+        /**
+         * Gets the pixels row by row and premultiplies them into the buffer.
+         */
+        PUT_PREMULTIPLIED_INTO_INTS(Target.INT_BUFFER) {
+            @Override
+            void convert(BufferedImage image, Workspace w) {
+                int width = image.getWidth();
+                int[] row = w.getRow(width);
+                for (int y = 0; y < image.getHeight(); y++) {
+                    image.getRGB(0, y, width, 1, row, 0, width);
+                    AlphaConverter.premultiply(row, 0, w.ints, y * width, width);
+                }
+            }
+        },
+        /**
+         * Draws into an intermediate INT_ARGB_PRE image and copies its data
+         * into the buffer.
+         */
+        PUT_ARGB_PRE_INTO_INTS(Target.INT_BUFFER) {
+            @Override
+            void convert(BufferedImage image, Workspace w) {
+                int[] data = w.draw(image, BufferedImage.TYPE_INT_ARGB_PRE);
+                int length = image.getWidth() * image.getHeight();
+                if (w.ints.hasArray()) {
+                    System.arraycopy(data, 0, w.ints.array(), w.ints.arrayOffset(), length);
+                } else {
+                    w.ints.duplicate().clear().put(data, 0, length);
+                }
+            }
+        },
+        /**
+         * Gets the pixels directly into the array of the buffer by the path
+         * for their alpha class.
+         */
+        PUT_CLASSIFIED_INTO_INTS(Target.INT_BUFFER) {
+            @Override
+            boolean accepts(Workspace w) {
+                return w.ints.hasArray();
+            }
+
+            @Override
+            void convert(BufferedImage image, Workspace w) {
+                w.getClassified(image, w.ints.array(), w.ints.arrayOffset(), image.getWidth());
+            }
+        },
+        /**
+         * Writes the pixels in a single pass with a {@link BgraPreWriter}.
+         */
+        PUT_BGRA_PRE_INTO_BYTES(Target.BYTE_BUFFER) {
+            @Override
+            void convert(BufferedImage image, Workspace w) {
+                w.getWriter().write(image, w.bytes);
+            }
+        },
+        /**
+         * Draws into an intermediate INT_ARGB_PRE image and copies its data
+         * into the buffer.
+         */
+        PUT_ARGB_PRE_INTO_BYTES(Target.BYTE_BUFFER) {
+            @Override
+            void convert(BufferedImage image, Workspace w) {
+                int[] data = w.draw(image, BufferedImage.TYPE_INT_ARGB_PRE);
+                w.bytes.asIntBuffer().put(data, 0, image.getWidth() * image.getHeight());
+            }
+        },
+        /**
+         * Gets the pixels row by row and premultiplies them into the buffer.
+         */
+        PUT_PREMULTIPLIED_INTO_BYTES(Target.BYTE_BUFFER) {
+            @Override
+            void convert(BufferedImage image, Workspace w) {
+                int width = image.getWidth();
+                int[] row = w.getRow(width);
+                for (int y = 0; y < image.getHeight(); y++) {
+                    image.getRGB(0, y, width, 1, row, 0, width);
+                    AlphaConverter.premultiply(row, 0, w.bytes, y * width, width);
+                }
+            }
+        };
+
+        private final Target target;
+
+        Strategy(Target target) {
+            this.target = target;
+        }
+
+        /**
+         * Gets the kind of target written by this strategy.
+         *
+         * @return the target kind
+         */
+        public Target getTarget() {
+            return target;
+        }
+
+        /**
+         * Checks whether this strategy can write to the current target.
+         */
+        boolean accepts(Workspace w) {
+            return true;
+        }
+
+        /**
+         * Converts the image into the current target of the workspace.
+         */
+        abstract void convert(BufferedImage image, Workspace w);
+    }
+
+    /**
+     * Holds the current target and the intermediate objects of the
+     * strategies, each created on first use.
+     */
+    static final class Workspace {
+
+        private WritableImage image;
+        private IntBuffer ints;
+        private ByteBuffer bytes;
+
+        private final Map<Integer, BufferedImage> temps = new TreeMap<>();
+        private ConversionContext context;
+        private AlphaClassifier classifier;
+        private BgraPreWriter writer;
+        private int[] array = new int[0];
+        private int[] row = new int[0];
+
+        private ConversionContext getContext() {
+            if (context == null) {
+                context = new ConversionContext();
+            }
+            return context;
+        }
+
+        private AlphaClassifier getClassifier() {
+            if (classifier == null) {
+                classifier = new AlphaClassifier();
+            }
+            return classifier;
+        }
+
+        /**
+         * Gets the pixels of an image by the path for its alpha class,
+         * classifying it again on every call. Callers often decode each new
+         * frame into the same image, so a class cached from an earlier frame
+         * could select a path that is wrong for the current one.
+         */
+        private void getClassified(BufferedImage image, int[] array, int offset, int scan) {
+            AlphaClassifier alpha = getClassifier();
+            alpha.remove(image);
+            alpha.getPixels(image, array, offset, scan);
+        }
+
+        private BgraPreWriter getWriter() {
+            if (writer == null) {
+                writer = new BgraPreWriter();
+            }
+            return writer;
+        }
+
+        private int[] getArray(int length) {
+            if (array.length < length) {
+                array = new int[length];
+            }
+            return array;
+        }
+
+        private int[] getRow(int length) {
+            if (row.length < length) {
+                row = new int[length];
+            }
+            return row;
+        }
+
+        /**
+         * Draws an image into an intermediate image of the given type with
+         * the same size, returning the data of the intermediate image.
+         */
+        private int[] draw(BufferedImage image, int type) {
+            BufferedImage tmp = temps.get(type);
+            if (tmp == null || tmp.getWidth() != image.getWidth() || tmp.getHeight() != image.getHeight()) {
+                tmp = new BufferedImage(image.getWidth(), image.getHeight(), type);
+                temps.put(type, tmp);
+            }
+            Graphics2D graphics = tmp.createGraphics();
+            graphics.setComposite(AlphaComposite.Src);
+            graphics.drawImage(image, 0, 0, null);
+            graphics.dispose();
+            return ((DataBufferInt) tmp.getRaster().getDataBuffer()).getData();
+        }
+    }
+
+    private final Path file;
+    private final long warmup;
+    private final int runs;
+    private final Map<String, Strategy> choices = new TreeMap<>();
+    private final Map<Target, Strategy> last = new EnumMap<>(Target.class);
+    private final Workspace workspace = new Workspace();
+
+    /**
+     * Creates a dispatcher that saves its choices to the given file, with the
+     * default warm-up time and number of calibration runs.
+     *
+     * @param file the file of saved choices, or {@code null} to keep them
+     * only in memory
+     * @throws IOException if an error occurs reading the file
+     */
+    public StrategyDispatcher(Path file) throws IOException {
+        this(file, DEFAULT_WARMUP, DEFAULT_RUNS);
+    }
+
+    /**
+     * Creates a dispatcher that saves its choices to the given file.
+     *
+     * @param file the file of saved choices, or {@code null} to keep them
+     * only in memory
+     * @param warmup the time in milliseconds of the untimed conversions of
+     * each strategy, which runs at least once untimed
+     * @param runs the number of timed conversions of each strategy, of which
+     * the fastest is kept
+     * @throws IllegalArgumentException if the warm-up time is negative or the
+     * number of runs is not positive
+     * @throws IOException if an error occurs reading the file
+     */
+    public StrategyDispatcher(Path file, long warmup, int runs) throws IOException {
+        if (warmup < 0) {
+            throw new IllegalArgumentException("Warm-up time must not be negative: " + warmup);
+        }
+        if (runs < 1) {
+            throw new IllegalArgumentException("Runs must be positive: " + runs);
+        }
+        this.file = file;
+        this.warmup = warmup;
+        this.runs = runs;
+        load();
+    }
+
+    /**
+     * Loads the saved choices if they were made on this platform, unless
+     * recalibration is requested.
+     */
+    private void load() throws IOException {
+        if (file == null || !Files.exists(file) || Boolean.getBoolean(RECALIBRATE)) {
+            return;
+        }
+        var properties = new Properties();
+        try (var reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        if (!System.getProperty(JAVA_VERSION).equals(properties.getProperty(JAVA_VERSION))
+                || !System.getProperty(OS_ARCH).equals(properties.getProperty(OS_ARCH))) {
+            return;
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.equals(JAVA_VERSION) && !key.equals(OS_ARCH)) {
+                try {
+                    choices.put(key, Strategy.valueOf(properties.getProperty(key)));
+                } catch (IllegalArgumentException ex) {
+                    // Ignores strategies that no longer exist.
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the choices with the platform on which they were made.
+     */
+    private void save() {
+        if (file == null) {
+            return;
+        }
+        var properties = new Properties();
+        properties.setProperty(JAVA_VERSION, System.getProperty(JAVA_VERSION));
+        properties.setProperty(OS_ARCH, System.getProperty(OS_ARCH));
+        choices.forEach((key, strategy) -> properties.setProperty(key, strategy.name()));
+        try (var writer = Files.newBufferedWriter(file)) {
+            properties.store(writer, "Fastest conversion strategies");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Gets the name of an AWT image type without its {@code TYPE_} prefix.
+     */
+    private static String getTypeName(int type) {
+        switch (type) {
+            case BufferedImage.TYPE_INT_RGB:
+                return "INT_RGB";
+            case BufferedImage.TYPE_INT_ARGB:
+                return "INT_ARGB";
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                return "INT_ARGB_PRE";
+            case BufferedImage.TYPE_INT_BGR:
+                return "INT_BGR";
+            case BufferedImage.TYPE_3BYTE_BGR:
+                return "3BYTE_BGR";
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                return "4BYTE_ABGR";
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+                return "4BYTE_ABGR_PRE";
+            case BufferedImage.TYPE_USHORT_565_RGB:
+                return "USHORT_565_RGB";
+            case BufferedImage.TYPE_USHORT_555_RGB:
+                return "USHORT_555_RGB";
+            case BufferedImage.TYPE_BYTE_GRAY:
+                return "BYTE_GRAY";
+            case BufferedImage.TYPE_USHORT_GRAY:
+                return "USHORT_GRAY";
+            case BufferedImage.TYPE_BYTE_BINARY:
+                return "BYTE_BINARY";
+            case BufferedImage.TYPE_BYTE_INDEXED:
+                return "BYTE_INDEXED";
+            default:
+                return "CUSTOM";
+        }
+    }
+
+    /**
+     * Gets the key of the choice for an image and a kind of target, with a
+     * heap buffer for the buffer targets.
+     *
+     * @param image the source AWT image
+     * @param target the kind of target
+     * @return the key as <i>type</i>.<i>target</i>.<i>size</i>, followed
+     * by {@code .HEAP} for the buffer targets
+     */
+    public static String getKey(BufferedImage image, Target target) {
+        return getKey(image, target, false);
+    }
+
+    /**
+     * Gets the key of the choice for an image and a kind of target. Buffers
+     * with and without an accessible array have separate choices, because
+     * some strategies write into the array directly.
+     *
+     * @param image the source AWT image
+     * @param target the kind of target
+     * @param direct {@code true} for a buffer target without an accessible
+     * array, such as a direct buffer; {@code false} for a heap buffer
+     * @return the key as <i>type</i>.<i>target</i>.<i>size</i>, followed
+     * by {@code .HEAP} or {@code .DIRECT} for the buffer targets
+     */
+    public static String getKey(BufferedImage image, Target target, boolean direct) {
+        String key = getTypeName(image.getType()) + "." + target + "." + SizeClass.of(image);
+        if (target == Target.IMAGE) {
+            return key;
+        }
+        return key + (direct ? ".DIRECT" : ".HEAP");
+    }
+
+    /**
+     * Gets the strategy chosen for images like the given one, if any, with a
+     * heap buffer for the buffer targets.
+     *
+     * @param image the source AWT image
+     * @param target the kind of target
+     * @return the chosen strategy, or {@code null} if none has been chosen
+     */
+    public Strategy getChoice(BufferedImage image, Target target) {
+        return getChoice(image, target, false);
+    }
+
+    /**
+     * Gets the strategy chosen for images like the given one, if any.
+     *
+     * @param image the source AWT image
+     * @param target the kind of target
+     * @param direct {@code true} for a buffer target without an accessible
+     * array, such as a direct buffer; {@code false} for a heap buffer
+     * @return the chosen strategy, or {@code null} if none has been chosen
+     */
+    public Strategy getChoice(BufferedImage image, Target target, boolean direct) {
+        return choices.get(getKey(image, target, direct));
+    }
+
+    /**
+     * Gets the strategy used by the most recent conversion to a kind of
+     * target.
+     *
+     * @param target the kind of target
+     * @return the strategy, or {@code null} if there has been no conversion
+     */
+    public Strategy getLastStrategy(Target target) {
+        return last.get(target);
+    }
+
+    /**
+     * Times every strategy for the current target of the workspace and saves
+     * the fastest as the choice for the key.
+     */
+    private Strategy calibrate(String key, BufferedImage image, Target target) {
+        Strategy best = null;
+        long bestTime = Long.MAX_VALUE;
+        for (Strategy strategy : Strategy.values()) {
+            if (strategy.target != target || !strategy.accepts(workspace)) {
+                continue;
+            }
+            long end = System.nanoTime() + warmup * 1_000_000;
+            do {
+                strategy.convert(image, workspace);
+            } while (System.nanoTime() - end < 0);
+            long time = Long.MAX_VALUE;
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                strategy.convert(image, workspace);
+                time = Math.min(time, System.nanoTime() - start);
+            }
+            if (time < bestTime) {
+                best = strategy;
+                bestTime = time;
+            }
+        }
+        choices.put(key, best);
+        save();
+        return best;
+    }
+
+    /**
+     * Checks whether the current target of the workspace is a buffer without
+     * an accessible array.
+     */
+    private boolean isDirect(Target target) {
+        switch (target) {
+            case INT_BUFFER:
+                return !workspace.ints.hasArray();
+            case BYTE_BUFFER:
+                return !workspace.bytes.hasArray();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Converts an image into the current target of the workspace with the
+     * chosen strategy, calibrating first if there is no choice yet.
+     */
+    private void dispatch(BufferedImage image, Target target) {
+        String key = getKey(image, target, isDirect(target));
+        Strategy strategy = choices.get(key);
+        if (strategy == null || !strategy.accepts(workspace)) {
+            strategy = calibrate(key, image, target);
+        }
+        strategy.convert(image, workspace);
+        last.put(target, strategy);
+    }
+
+    /**
+     * Calibrates the strategies for images like the given one ahead of time,
+     * such as at startup, unless a choice has already been made. The buffer
+     * targets are calibrated with heap buffers.
+     *
+     * @param image a sample source AWT image
+     * @param target the kind of target
+     * @return the chosen strategy
+     */
+    public Strategy calibrate(BufferedImage image, Target target) {
+        return calibrate(image, target, false);
+    }
+
+    /**
+     * Calibrates the strategies for images like the given one ahead of time,
+     * such as at startup, unless a choice has already been made.
+     *
+     * @param image a sample source AWT image
+     * @param target the kind of target
+     * @param direct {@code true} to calibrate the buffer targets with direct
+     * buffers; {@code false} for heap buffers
+     * @return the chosen strategy
+     */
+    public Strategy calibrate(BufferedImage image, Target target, boolean direct) {
+        String key = getKey(image, target, direct);
+        Strategy strategy = choices.get(key);
+        if (strategy != null) {
+            return strategy;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        switch (target) {
+            case IMAGE:
+                workspace.image = new WritableImage(width, height);
+                break;
+            case INT_BUFFER:
+                workspace.ints = direct ? ByteBuffer.allocateDirect(width * height * Integer.BYTES)
+                        .order(ByteOrder.nativeOrder()).asIntBuffer() : IntBuffer.allocate(width * height);
+                break;
+            default:
+                int length = width * height * Integer.BYTES;
+                ByteBuffer bytes = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+                workspace.bytes = bytes.order(ByteOrder.LITTLE_ENDIAN);
+                break;
+        }
+        strategy = calibrate(key, image, target);
+        workspace.image = null;
+        workspace.ints = null;
+        workspace.bytes = null;
+        return strategy;
+    }
+
+    /**
+     * Copies the pixels of an AWT image into a JavaFX image with the fastest
+     * correct strategy. No strategy keeps anything about the pixels between
+     * calls, so the same AWT image may be converted again after new pixels
+     * are drawn or decoded into it.
+     *
+     * @param bimg the AWT image to be converted
+     * @param wimg an optional JavaFX image of the same size to store the
+     * pixels, or {@code null}
+     * @return the optional JavaFX image if it was of the same size, or a new
+     * JavaFX image
+     */
+    public WritableImage toFXImage(BufferedImage bimg, WritableImage wimg) {
+        int width = bimg.getWidth();
+        int height = bimg.getHeight();
+        if (wimg == null || (int) wimg.getWidth() != width || (int) wimg.getHeight() != height) {
+            wimg = new WritableImage(width, height);
+        }
+        workspace.image = wimg;
+        try {
+            dispatch(bimg, Target.IMAGE);
+        } finally {
+            workspace.image = null;
+        }
+        return wimg;
+    }
+
+    /**
+     * Copies the pixels of an AWT image into the buffer of a
+     * {@code PixelBuffer} of the same size with the fastest correct strategy.
+     * The caller still has to call {@code PixelBuffer.updateBuffer} on the
+     * JavaFX Application Thread. As with {@link #toFXImage toFXImage}, the
+     * same AWT image may be put again after its pixels change.
+     *
+     * @param bimg the AWT image to be converted
+     * @param pixels the target {@code PixelBuffer} in INT_ARGB_PRE or
+     * BYTE_BGRA_PRE format
+     * @throws IllegalArgumentException if the pixel buffer is of a different
+     * size or format
+     */
+    public void put(BufferedImage bimg, PixelBuffer<? extends Buffer> pixels) {
+        if (pixels.getWidth() != bimg.getWidth() || pixels.getHeight() != bimg.getHeight()) {
+            throw new IllegalArgumentException("Pixel buffer size does not match: "
+                    + pixels.getWidth() + "x" + pixels.getHeight());
+        }
+        PixelFormat<? extends Buffer> format = pixels.getPixelFormat();
+        Buffer buffer = pixels.getBuffer();
+        try {
+            if (format.getType() == PixelFormat.Type.INT_ARGB_PRE) {
+                workspace.ints = (IntBuffer) buffer;
+                dispatch(bimg, Target.INT_BUFFER);
+            } else if (format.getType() == PixelFormat.Type.BYTE_BGRA_PRE) {
+                var bytes = (ByteBuffer) buffer;
+                workspace.bytes = bytes.order() == ByteOrder.LITTLE_ENDIAN ? bytes
+                        : bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                dispatch(bimg, Target.BYTE_BUFFER);
+            } else {
+                throw new IllegalArgumentException("Unsupported pixel format: " + format.getType());
+            }
+        } finally {
+            workspace.ints = null;
+            workspace.bytes = null;
+        }
+    }
+}
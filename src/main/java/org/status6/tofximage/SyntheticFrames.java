@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+
+/**
+ * Generates deterministic frames of any size in TYPE_INT_ARGB format, so that
+ * the conversions can be measured at sizes other than that of the animation.
+ * The same arguments always produce the same pixels. The color channels are
+ * gradients that shift from one frame to the next, and the alpha channel
+ * depends on the content variant.
+ *
+ * @author John Neffenger
+ */
+final class SyntheticFrames {
+
+    /**
+     * The kind of alpha values in the generated frames.
+     */
+    enum Content {
+        /**
+         * Every pixel is fully opaque.
+         */
+        OPAQUE,
+        /**
+         * Every pixel is either fully opaque or fully transparent, in a
+         * checkerboard of 16-pixel squares.
+         */
+        BINARY,
+        /**
+         * The pixels take every alpha value from 0 to 255 in diagonal
+         * gradients.
+         */
+        TRANSLUCENT
+    }
+
+    /**
+     * The maximum number of bytes of pixels in one list of frames.
+     */
+    private static final long MAX_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * The maximum number of frames in one list.
+     */
+    private static final int MAX_FRAMES = 8;
+
+    private SyntheticFrames() {
+    }
+
+    /**
+     * Gets the number of frames of 32-bit pixels that fit in a fixed memory
+     * budget, but at least one frame and no more than eight.
+     *
+     * @param width the width of each frame in pixels
+     * @param height the height of each frame in pixels
+     * @return the number of frames
+     */
+    static int getCount(int width, int height) {
+        long bytes = (long) width * height * Integer.BYTES;
+        return (int) Math.max(1, Math.min(MAX_FRAMES, MAX_BYTES / bytes));
+    }
+
+    /**
+     * Generates one frame.
+     *
+     * @param width the width of the frame in pixels
+     * @param height the height of the frame in pixels
+     * @param content the kind of alpha values in the frame
+     * @param frame the index of the frame, which shifts its pattern
+     * @return the frame as an AWT image of type TYPE_INT_ARGB
+     */
+    static BufferedImage create(int width, int height, Content content, int frame) {
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int shift = frame * 8;
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x + shift) & 0xff;
+                int g = (y + shift) & 0xff;
+                int b = ((x ^ y) + shift) & 0xff;
+                int a;
+                switch (content) {
+                    case BINARY:
+                        a = (((x >> 4) + (y >> 4) + frame) & 1) == 0 ? 0xff : 0;
+                        break;
+                    case TRANSLUCENT:
+                        a = (x + y + shift) & 0xff;
+                        break;
+                    default:
+                        a = 0xff;
+                        break;
+                }
+                data[i++] = a << 24 | r << 16 | g << 8 | b;
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Generates a list of frames, with as many frames as fit in a fixed
+     * memory budget.
+     *
+     * @param width the width of each frame in pixels
+     * @param height the height of each frame in pixels
+     * @param content the kind of alpha values in the frames
+     * @return the list of frames as AWT images of type TYPE_INT_ARGB
+     */
+    static ArrayList<BufferedImage> createList(int width, int height, Content content) {
+        int count = getCount(width, height);
+        var list = new ArrayList<BufferedImage>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(create(width, height, content, i));
+        }
+        return list;
+    }
+}
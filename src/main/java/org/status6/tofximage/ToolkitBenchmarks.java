@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2019-2020 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.status6.tofximage;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.stage.Stage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the real cost of handing a frame to JavaFX, which the benchmarks in
+ * {@link Benchmarks} only simulate. These benchmarks start the JavaFX toolkit
+ * with the headless Monocle platform and the software rendering pipeline, so
+ * they run on a Linux system with no display and no GPU. Each frame is copied
+ * into a {@code PixelBuffer} and shown by calling
+ * {@code PixelBuffer.updateBuffer} on the JavaFX Application Thread through
+ * {@code Platform.runLater}. A frame counts as shown once the pulse that
+ * renders it has run; the pulse waits for the previous frame to be rendered,
+ * so the upload of each frame to the rendering pipeline is included.
+ * <p>
+ * With one buffer, the frame is copied inside the {@code updateBuffer}
+ * callback on the JavaFX Application Thread, as the {@code PixelBuffer}
+ * contract requires. With two or three buffers, the frame is copied on the
+ * benchmark thread into a buffer that is not being shown, and the image view
+ * is switched to that buffer. The pulse rate is not throttled, so the
+ * throughput is not limited to 60 frames per second. Run a quick test of only
+ * these benchmarks with a command like the following:</p>
+ * <pre>{@code
+ * $HOME/opt/jdk-14.0.1/bin/java \
+ *   -Djava.library.path=$HOME/lib/javafx-sdk-15/lib \
+ *   -jar target/benchmarks.jar ToolkitBenchmarks -f 1 -i 1 -wi 1
+ * }</pre>
+ *
+ * @author John Neffenger
+ */
+@Fork(jvmArgsAppend = {"-Dglass.platform=Monocle", "-Dmonocle.platform=Headless",
+    "-Dprism.order=sw", "-Djavafx.animation.fullspeed=true"})
+public class ToolkitBenchmarks {
+
+    /**
+     * The file name of the source animation.
+     */
+    private static final String FILE_NAME = "doll-dancing.gif";
+
+    /**
+     * Whether the JavaFX toolkit has been started in this JVM.
+     */
+    private static boolean started;
+
+    /**
+     * Starts the JavaFX toolkit, which can be started only once in each JVM,
+     * and waits for it to be ready.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static synchronized void startToolkit() throws InterruptedException {
+        if (!started) {
+            var latch = new CountDownLatch(1);
+            Platform.setImplicitExit(false);
+            Platform.startup(latch::countDown);
+            latch.await();
+            started = true;
+        }
+    }
+
+    /**
+     * Runs the task on the JavaFX Application Thread and waits for it to
+     * finish.
+     *
+     * @param task the task to run
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void runAndWait(Runnable task) throws InterruptedException {
+        var latch = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            try {
+                task.run();
+            } finally {
+                latch.countDown();
+            }
+        });
+        latch.await();
+    }
+
+    @State(Scope.Thread)
+    public static class SourceAwtImage {
+
+        private ArrayList<BufferedImage> frames;
+        private int width;
+        private int height;
+        private int index;
+
+        private void nextFrame() {
+            index = index == frames.size() - 1 ? 0 : index + 1;
+        }
+
+        @Setup
+        public void doSetup() throws IOException {
+            var input = ToolkitBenchmarks.class.getResourceAsStream("/" + FILE_NAME);
+            if (input == null) {
+                throw new IOException("Error loading image");
+            }
+            ImageInputStream stream = ImageIO.createImageInputStream(input);
+            ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+            reader.setInput(stream);
+            int count = reader.getNumImages(true);
+            frames = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                frames.add(reader.read(i));
+            }
+            stream.close();
+            reader.dispose();
+            width = frames.get(0).getWidth();
+            height = frames.get(0).getHeight();
+            index = 0;
+        }
+
+        @TearDown
+        public void doTearDown() {
+            frames.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ShownImage {
+
+        /**
+         * The number of {@code PixelBuffer} objects swapped in the image
+         * view: 1 for a single buffer updated in place, 2 for double
+         * buffering, and 3 for triple buffering.
+         */
+        @Param({"1", "2", "3"})
+        public int buffers;
+
+        private IntBuffer[] data;
+        private PixelBuffer<IntBuffer>[] pixels;
+        private WritableImage[] images;
+        private ImageView view;
+        private Stage stage;
+
+        /**
+         * The number of frames submitted by the benchmark thread.
+         */
+        private long submitted;
+
+        /**
+         * The number of frames applied on the JavaFX Application Thread.
+         */
+        private long applied;
+
+        /**
+         * The number of frames shown, set after layout in each pulse.
+         */
+        private volatile long shown;
+
+        /**
+         * Waits until the given number of frames have been shown.
+         */
+        private void awaitShown(long count) throws InterruptedException {
+            int spins = 0;
+            while (shown < count) {
+                spins = FrameRing.idle(spins);
+            }
+        }
+
+        @Setup
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        public void doSetup(SourceAwtImage awt) throws InterruptedException {
+            startToolkit();
+            data = new IntBuffer[buffers];
+            pixels = new PixelBuffer[buffers];
+            images = new WritableImage[buffers];
+            var format = PixelFormat.getIntArgbPreInstance();
+            for (int i = 0; i < buffers; i++) {
+                data[i] = IntBuffer.allocate(awt.width * awt.height);
+                pixels[i] = new PixelBuffer<>(awt.width, awt.height, data[i], format);
+                images[i] = new WritableImage(pixels[i]);
+            }
+            submitted = 0;
+            applied = 0;
+            shown = 0;
+            runAndWait(() -> {
+                view = new ImageView(images[0]);
+                var scene = new Scene(new Group(view), awt.width, awt.height);
+                scene.addPostLayoutPulseListener(() -> shown = applied);
+                stage = new Stage();
+                stage.setScene(scene);
+                stage.show();
+            });
+        }
+
+        @TearDown
+        public void doTearDown() throws InterruptedException {
+            runAndWait(() -> stage.close());
+        }
+    }
+
+    /**
+     * Submits the next frame of the source AWT image to be shown. With one
+     * buffer, the pixels are copied on the JavaFX Application Thread inside
+     * the {@code updateBuffer} callback once the previous frame has been
+     * shown; otherwise, the pixels are copied on
+     * the calling thread into the next buffer once the frame last shown from
+     * that buffer has been replaced. This method copies pixels in the INT_ARGB
+     * format into an integer buffer as INT_ARGB_PRE pixels (wrong alpha), like
+     * {@link Benchmarks#putDirectIntoInts}.
+     *
+     * @return the number of the submitted frame, counting from one
+     */
+    private static long submit(SourceAwtImage awt, ShownImage jfx) throws InterruptedException {
+        BufferedImage awtImage = awt.frames.get(awt.index);
+        long frame = ++jfx.submitted;
+        if (jfx.buffers == 1) {
+            jfx.awaitShown(frame - 1);
+            Platform.runLater(() -> {
+                jfx.pixels[0].updateBuffer(b -> {
+                    awtImage.getRGB(0, 0, awt.width, awt.height, jfx.data[0].array(), 0, awt.width);
+                    return null;
+                });
+                jfx.applied++;
+            });
+        } else {
+            jfx.awaitShown(frame - jfx.buffers + 1);
+            int i = (int) (frame % jfx.buffers);
+            awtImage.getRGB(0, 0, awt.width, awt.height, jfx.data[i].array(), 0, awt.width);
+            Platform.runLater(() -> {
+                jfx.pixels[i].updateBuffer(b -> null);
+                jfx.view.setImage(jfx.images[i]);
+                jfx.applied++;
+            });
+        }
+        awt.nextFrame();
+        return frame;
+    }
+
+    /**
+     * Submits the next frame to be shown without waiting for it, so that up to
+     * one frame less than the number of buffers, but at least one frame, is in
+     * flight. The score is
+     * the sustained number of frames shown per second.
+     *
+     * @param awt the source AWT image
+     * @param jfx the image view with its {@code PixelBuffer} objects
+     * @throws InterruptedException if interrupted while waiting for a buffer
+     */
+    @Benchmark
+    public void updateBuffer(SourceAwtImage awt, ShownImage jfx) throws InterruptedException {
+        submit(awt, jfx);
+    }
+
+    /**
+     * Submits the next frame to be shown and waits until it has been shown.
+     * The score is the distribution of the round-trip latency of each frame.
+     *
+     * @param awt the source AWT image
+     * @param jfx the image view with its {@code PixelBuffer} objects
+     * @throws InterruptedException if interrupted while waiting for the frame
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void updateBufferAndWait(SourceAwtImage awt, ShownImage jfx) throws InterruptedException {
+        jfx.awaitShown(submit(awt, jfx));
+    }
+}